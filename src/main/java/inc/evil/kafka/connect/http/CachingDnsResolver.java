@@ -0,0 +1,64 @@
+package inc.evil.kafka.connect.http;
+
+import org.apache.hc.client5.http.DnsResolver;
+import org.apache.hc.client5.http.SystemDefaultDnsResolver;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link DnsResolver} that keeps resolved addresses for a fixed time in a cache shared by all clients in the JVM,
+ * so that tasks restarting together during a rebalance do not each query DNS for the same host.
+ */
+final class CachingDnsResolver implements DnsResolver {
+
+    private static final ConcurrentMap<String, Entry> CACHE = new ConcurrentHashMap<>();
+
+    private final DnsResolver delegate;
+    private final long ttlMs;
+
+    /**
+     * @param ttlMs How long resolved addresses are reused.
+     */
+    CachingDnsResolver(long ttlMs) {
+        this(SystemDefaultDnsResolver.INSTANCE, ttlMs);
+    }
+
+    CachingDnsResolver(DnsResolver delegate, long ttlMs) {
+        this.delegate = delegate;
+        this.ttlMs = ttlMs;
+    }
+
+    @Override
+    public InetAddress[] resolve(String host) throws UnknownHostException {
+        long now = System.currentTimeMillis();
+        Entry entry = CACHE.get(host);
+        if (entry != null && now - entry.resolvedAt < ttlMs) {
+            return entry.addresses.clone();
+        }
+        InetAddress[] addresses = delegate.resolve(host);
+        CACHE.put(host, new Entry(addresses.clone(), now));
+        return addresses;
+    }
+
+    @Override
+    public String resolveCanonicalHostname(String host) throws UnknownHostException {
+        return delegate.resolveCanonicalHostname(host);
+    }
+
+    static void clear() {
+        CACHE.clear();
+    }
+
+    private static final class Entry {
+        private final InetAddress[] addresses;
+        private final long resolvedAt;
+
+        private Entry(InetAddress[] addresses, long resolvedAt) {
+            this.addresses = addresses;
+            this.resolvedAt = resolvedAt;
+        }
+    }
+}
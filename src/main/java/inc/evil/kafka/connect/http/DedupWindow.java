@@ -0,0 +1,131 @@
+package inc.evil.kafka.connect.http;
+
+/**
+ * Remembers which record IDs were emitted within a time window, using a fixed amount of memory.
+ * <p>
+ * IDs are stored as 64-bit hashes in two primitive structures sized once from the memory budget:
+ * a ring buffer holding the hashes in emission order with their timestamps, and an open-addressing
+ * hash set for lookups. The number of IDs is rounded down to a power of two so that the set, twice as large,
+ * never exceeds 50% load within the budget. IDs older than the window are evicted from the head of the ring; when the ring
+ * is full the oldest ID is evicted early, so memory stays flat however many distinct IDs pass through.
+ * </p>
+ */
+final class DedupWindow {
+
+    /** Bytes used per remembered ID: hash and timestamp in the ring, two set slots at 50% load. */
+    static final int BYTES_PER_ID = 4 * Long.BYTES;
+
+    private final long windowMs;
+    private final long[] ringHashes;
+    private final long[] ringTimes;
+    private final long[] set;
+    private final int mask;
+    private int head;
+    private int count;
+
+    /**
+     * @param windowMs    How long an emitted ID suppresses duplicates.
+     * @param memoryBytes The memory budget.
+     */
+    DedupWindow(long windowMs, long memoryBytes) {
+        this.windowMs = windowMs;
+        int maxIds = (int) Math.max(1, Math.min(memoryBytes / BYTES_PER_ID, 1 << 28));
+        int setCapacity = Integer.highestOneBit(maxIds) << 1;
+        int capacity = setCapacity >>> 1;
+        this.ringHashes = new long[capacity];
+        this.ringTimes = new long[capacity];
+        this.set = new long[setCapacity];
+        this.mask = setCapacity - 1;
+    }
+
+    /**
+     * Records an ID as emitted unless it already was within the window.
+     *
+     * @param id  The record ID.
+     * @param now The current time in milliseconds.
+     * @return Whether the ID was not seen within the window and should be emitted.
+     */
+    boolean markIfAbsent(String id, long now) {
+        expire(now);
+        long hash = FingerprintIndex.hash(id);
+        if (indexOf(hash) >= 0) {
+            return false;
+        }
+        if (count == ringHashes.length) {
+            evictOldest();
+        }
+        int tail = (head + count) % ringHashes.length;
+        ringHashes[tail] = hash;
+        ringTimes[tail] = now;
+        count++;
+        int slot = home(hash);
+        while (set[slot] != 0L) {
+            slot = (slot + 1) & mask;
+        }
+        set[slot] = hash;
+        return true;
+    }
+
+    /**
+     * @param id  The record ID.
+     * @param now The current time in milliseconds.
+     * @return Whether the ID was recorded as emitted within the window.
+     */
+    boolean contains(String id, long now) {
+        expire(now);
+        return indexOf(FingerprintIndex.hash(id)) >= 0;
+    }
+
+    int size() {
+        return count;
+    }
+
+    private void expire(long now) {
+        while (count > 0 && ringTimes[head] <= now - windowMs) {
+            evictOldest();
+        }
+    }
+
+    private void evictOldest() {
+        remove(ringHashes[head]);
+        head = (head + 1) % ringHashes.length;
+        count--;
+    }
+
+    private int home(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private int indexOf(long hash) {
+        for (int slot = home(hash); set[slot] != 0L; slot = (slot + 1) & mask) {
+            if (set[slot] == hash) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Removes a hash with backward-shift deletion, which keeps linear probing chains intact without tombstones.
+     */
+    private void remove(long hash) {
+        int hole = indexOf(hash);
+        if (hole < 0) {
+            return;
+        }
+        int next = hole;
+        while (true) {
+            next = (next + 1) & mask;
+            if (set[next] == 0L) {
+                break;
+            }
+            int home = home(set[next]);
+            boolean stays = hole <= next ? hole < home && home <= next : hole < home || home <= next;
+            if (!stays) {
+                set[hole] = set[next];
+                hole = next;
+            }
+        }
+        set[hole] = 0L;
+    }
+}
@@ -0,0 +1,39 @@
+package inc.evil.kafka.connect.http;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the executors that run blocking fetches concurrently.
+ * <p>
+ * This is the Java 11 variant, which uses a cached pool of daemon platform threads. On Java 21 and later,
+ * the multi-release JAR provides a variant from {@code src/main/java21} that starts a virtual thread per fetch instead,
+ * so a task can wait on thousands of slow requests without holding a platform thread for each.
+ * </p>
+ */
+final class FetchExecutors {
+
+    private FetchExecutors() {
+    }
+
+    /**
+     * @param name The prefix of the thread names.
+     * @return A new executor that starts threads on demand.
+     */
+    static ExecutorService newExecutor(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return Whether the executors run fetches on virtual threads.
+     */
+    static boolean usesVirtualThreads() {
+        return false;
+    }
+}
@@ -0,0 +1,153 @@
+package inc.evil.kafka.connect.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The complete lines contained in one byte range of a remote line-delimited file (CSV, NDJSON, ...).
+ * <p>
+ * Each line remembers the byte position right after it, so that a consumer can resume reading
+ * the file from the last line it has processed. A trailing partial line is left out and is read
+ * again with the next range, unless the range ends the file.
+ * </p>
+ */
+final class FileChunk {
+
+    private final List<String> lines;
+    private final List<Long> nextPositions;
+    private final long endPosition;
+    private final long totalLength;
+    private final String etag;
+    private final boolean replaced;
+    private final int firstByte;
+
+    private FileChunk(List<String> lines, List<Long> nextPositions, long endPosition, long totalLength, String etag, boolean replaced,
+                      int firstByte) {
+        this.lines = lines;
+        this.nextPositions = nextPositions;
+        this.endPosition = endPosition;
+        this.totalLength = totalLength;
+        this.etag = etag;
+        this.replaced = replaced;
+        this.firstByte = firstByte;
+    }
+
+    /**
+     * Splits the streamed range into lines without buffering more than one line at a time.
+     *
+     * @param in          The range content.
+     * @param start       The byte position of the first byte of the range.
+     * @param totalLength The total length of the file, or -1 if unknown.
+     * @param etag        The entity tag of the file, may be null.
+     * @return The chunk.
+     * @throws IOException If the content cannot be read.
+     */
+    static FileChunk read(InputStream in, long start, long totalLength, String etag) throws IOException {
+        List<String> lines = new ArrayList<>();
+        List<Long> nextPositions = new ArrayList<>();
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        long position = start;
+        long endPosition = start;
+        int firstByte = -1;
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            if (firstByte < 0 && n > 0) {
+                firstByte = buffer[0] & 0xff;
+            }
+            int lineStart = 0;
+            for (int i = 0; i < n; i++) {
+                if (buffer[i] == '\n') {
+                    line.write(buffer, lineStart, i - lineStart);
+                    endPosition = position + i + 1;
+                    addLine(lines, nextPositions, line, endPosition);
+                    lineStart = i + 1;
+                }
+            }
+            line.write(buffer, lineStart, n - lineStart);
+            position += n;
+        }
+        if (line.size() > 0 && totalLength >= 0 && position >= totalLength) {
+            endPosition = position;
+            addLine(lines, nextPositions, line, endPosition);
+        }
+        return new FileChunk(lines, nextPositions, endPosition, totalLength, etag, false, firstByte);
+    }
+
+    /**
+     * @param position    The position that was requested.
+     * @param totalLength The total length of the file, or -1 if unknown.
+     * @param etag        The entity tag of the file, may be null.
+     * @return A chunk without lines, for a range starting at or beyond the end of the file.
+     */
+    static FileChunk empty(long position, long totalLength, String etag) {
+        return new FileChunk(Collections.emptyList(), Collections.emptyList(), position, totalLength, etag, false, -1);
+    }
+
+    /**
+     * @param etag The entity tag of the new file, may be null.
+     * @return A chunk signalling that the file was replaced since it was last read, so it must be read from the start.
+     */
+    static FileChunk replaced(String etag) {
+        return new FileChunk(Collections.emptyList(), Collections.emptyList(), 0L, -1L, etag, true, -1);
+    }
+
+    private static void addLine(List<String> lines, List<Long> nextPositions, ByteArrayOutputStream line, long nextPosition) {
+        String text = line.toString(StandardCharsets.UTF_8);
+        line.reset();
+        if (text.endsWith("\r")) {
+            text = text.substring(0, text.length() - 1);
+        }
+        if (!text.isEmpty()) {
+            lines.add(text);
+            nextPositions.add(nextPosition);
+        }
+    }
+
+    List<String> getLines() {
+        return lines;
+    }
+
+    /**
+     * @param index The index of a line.
+     * @return The byte position right after the line.
+     */
+    long getNextPosition(int index) {
+        return nextPositions.get(index);
+    }
+
+    /**
+     * @return The byte position right after the last complete line, where the next range should start.
+     */
+    long getEndPosition() {
+        return endPosition;
+    }
+
+    /**
+     * @return Whether every byte of the file up to its current length has been read.
+     */
+    boolean isEndOfFile() {
+        return totalLength >= 0 && endPosition >= totalLength;
+    }
+
+    String getEtag() {
+        return etag;
+    }
+
+    boolean isReplaced() {
+        return replaced;
+    }
+
+    /**
+     * @return Whether the range starts with a line feed, which shows that a range requested from the byte before
+     * a line boundary still ends a line there.
+     */
+    boolean startsWithLineFeed() {
+        return firstByte == '\n';
+    }
+}
@@ -0,0 +1,264 @@
+package inc.evil.kafka.connect.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An open-addressing hash map from 64-bit key hashes to 64-bit content fingerprints, which also keeps
+ * the original key bytes so that removed keys can be reported.
+ * <p>
+ * Entries live in primitive buffers rather than objects: a slot table of {@code [keyHash, fingerprint, keyRef]}
+ * triples and an append-only arena of UTF-8 key bytes. Both buffers are either on the heap or, when a
+ * directory is given, memory-mapped files, which moves large indexes out of the Java heap.
+ * </p>
+ */
+final class FingerprintIndex implements Closeable {
+
+    /** Returned by {@link #get(long)} for unknown keys; fingerprints are never 0. */
+    static final long ABSENT = 0L;
+
+    private static final int SLOT_BYTES = 3 * Long.BYTES;
+    private static final int MIN_CAPACITY = 1024;
+
+    private final Path directory;
+    private final String name;
+
+    private ByteBuffer slots;
+    private Path slotsFile;
+    private int capacity;
+    private int size;
+    private ByteBuffer keys;
+    private Path keysFile;
+    private int keysLength;
+    private int generation;
+
+    /**
+     * @param directory    The directory for memory-mapped files, or null to keep the index on the heap.
+     * @param name         A name unique within the directory.
+     * @param expectedSize The expected number of entries.
+     * @throws IOException If the mapped files cannot be created.
+     */
+    FingerprintIndex(Path directory, String name, int expectedSize) throws IOException {
+        this.directory = directory;
+        this.name = name;
+        int initialCapacity = MIN_CAPACITY;
+        while (initialCapacity < expectedSize * 2L && initialCapacity < (1 << 26)) {
+            initialCapacity <<= 1;
+        }
+        this.capacity = initialCapacity;
+        this.slotsFile = file("slots");
+        this.slots = allocate(slotsFile, (long) capacity * SLOT_BYTES);
+        this.keysFile = file("keys");
+        this.keys = allocate(keysFile, Math.max(expectedSize, MIN_CAPACITY) * 16L);
+    }
+
+    /**
+     * @param keyHash The key hash.
+     * @return The fingerprint stored for the key, or {@link #ABSENT}.
+     */
+    long get(long keyHash) {
+        int slot = find(normalize(keyHash));
+        return slot < 0 ? ABSENT : slots.getLong(slot * SLOT_BYTES + Long.BYTES);
+    }
+
+    /**
+     * Stores the fingerprint of a key, replacing any previous one.
+     *
+     * @param keyHash     The key hash.
+     * @param fingerprint The content fingerprint, see {@link #fingerprint(String)}.
+     * @param key         The key itself.
+     * @throws IOException If a mapped buffer cannot be grown.
+     */
+    void put(long keyHash, long fingerprint, String key) throws IOException {
+        long hash = normalize(keyHash);
+        int existing = find(hash);
+        if (existing >= 0) {
+            slots.putLong(existing * SLOT_BYTES + Long.BYTES, fingerprint);
+            return;
+        }
+        if ((size + 1) * 4L > capacity * 3L) {
+            resize();
+        }
+        insert(hash, fingerprint, appendKey(key));
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Visits every entry.
+     *
+     * @param visitor Receives the key hash, fingerprint and key of each entry.
+     */
+    void forEach(EntryVisitor visitor) {
+        for (int slot = 0; slot < capacity; slot++) {
+            long hash = slots.getLong(slot * SLOT_BYTES);
+            if (hash != 0L) {
+                visitor.visit(hash, slots.getLong(slot * SLOT_BYTES + Long.BYTES), readKey(slots.getLong(slot * SLOT_BYTES + 2 * Long.BYTES)));
+            }
+        }
+    }
+
+    /**
+     * Deletes the mapped files, if any.
+     *
+     * @throws IOException If a file cannot be deleted.
+     */
+    @Override
+    public void close() throws IOException {
+        slots = null;
+        keys = null;
+        if (slotsFile != null) {
+            Files.deleteIfExists(slotsFile);
+        }
+        if (keysFile != null) {
+            Files.deleteIfExists(keysFile);
+        }
+    }
+
+    /**
+     * @param text The text to hash.
+     * @return A 64-bit hash of the text; never 0.
+     */
+    static long hash(String text) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            h ^= text.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return normalize(mix(h ^ text.length()));
+    }
+
+    /**
+     * @param content The content to fingerprint.
+     * @return A 64-bit fingerprint of the content; never {@link #ABSENT}.
+     */
+    static long fingerprint(String content) {
+        return normalize(mix(hash(content) + 0x9e3779b97f4a7c15L));
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long normalize(long value) {
+        return value == 0L ? 1L : value;
+    }
+
+    private int find(long hash) {
+        int mask = capacity - 1;
+        for (int slot = (int) mix(hash) & mask; ; slot = (slot + 1) & mask) {
+            long stored = slots.getLong(slot * SLOT_BYTES);
+            if (stored == 0L) {
+                return -1;
+            }
+            if (stored == hash) {
+                return slot;
+            }
+        }
+    }
+
+    private void insert(long hash, long fingerprint, long keyRef) {
+        int mask = capacity - 1;
+        int slot = (int) mix(hash) & mask;
+        while (slots.getLong(slot * SLOT_BYTES) != 0L) {
+            slot = (slot + 1) & mask;
+        }
+        slots.putLong(slot * SLOT_BYTES, hash);
+        slots.putLong(slot * SLOT_BYTES + Long.BYTES, fingerprint);
+        slots.putLong(slot * SLOT_BYTES + 2 * Long.BYTES, keyRef);
+    }
+
+    private void resize() throws IOException {
+        ByteBuffer oldSlots = slots;
+        Path oldFile = slotsFile;
+        int oldCapacity = capacity;
+        capacity = oldCapacity << 1;
+        slotsFile = file("slots");
+        slots = allocate(slotsFile, (long) capacity * SLOT_BYTES);
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            long hash = oldSlots.getLong(slot * SLOT_BYTES);
+            if (hash != 0L) {
+                insert(hash, oldSlots.getLong(slot * SLOT_BYTES + Long.BYTES), oldSlots.getLong(slot * SLOT_BYTES + 2 * Long.BYTES));
+            }
+        }
+        if (oldFile != null) {
+            Files.deleteIfExists(oldFile);
+        }
+    }
+
+    private long appendKey(String key) throws IOException {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        if (keysLength + (long) bytes.length > keys.capacity()) {
+            long newCapacity = Math.max(keys.capacity() * 2L, keysLength + (long) bytes.length);
+            if (newCapacity > Integer.MAX_VALUE) {
+                throw new IOException("Fingerprint index key arena exceeds 2 GiB.");
+            }
+            ByteBuffer grown;
+            if (keysFile != null) {
+                grown = allocate(keysFile, newCapacity, false);
+            } else {
+                grown = ByteBuffer.allocate((int) newCapacity);
+                grown.put(keys.duplicate().position(0).limit(keysLength));
+            }
+            keys = grown;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            keys.put(keysLength + i, bytes[i]);
+        }
+        long keyRef = ((long) keysLength << 32) | bytes.length;
+        keysLength += bytes.length;
+        return keyRef;
+    }
+
+    private String readKey(long keyRef) {
+        int offset = (int) (keyRef >>> 32);
+        int length = (int) keyRef;
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = keys.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private Path file(String kind) {
+        return directory == null ? null : directory.resolve(name + "-" + (generation++) + "." + kind);
+    }
+
+    private static ByteBuffer allocate(Path file, long bytes) throws IOException {
+        return allocate(file, bytes, true);
+    }
+
+    private static ByteBuffer allocate(Path file, long bytes, boolean truncate) throws IOException {
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IOException("Fingerprint index buffer exceeds 2 GiB.");
+        }
+        if (file == null) {
+            return ByteBuffer.allocate((int) bytes);
+        }
+        Files.createDirectories(file.getParent());
+        try (FileChannel channel = truncate
+                ? FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)
+                : FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        }
+    }
+
+    /**
+     * Receives the entries of the index.
+     */
+    @FunctionalInterface
+    interface EntryVisitor {
+        void visit(long keyHash, long fingerprint, String key);
+    }
+}
@@ -1,5 +1,7 @@
 package inc.evil.kafka.connect.http;
 
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.SystemDefaultDnsResolver;
 import org.apache.hc.client5.http.classic.methods.HttpDelete;
 import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.apache.hc.client5.http.classic.methods.HttpPatch;
@@ -7,9 +9,19 @@ import org.apache.hc.client5.http.classic.methods.HttpPost;
 import org.apache.hc.client5.http.classic.methods.HttpPut;
 import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
 import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.entity.DeflateInputStream;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.impl.routing.DefaultRoutePlanner;
+import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.client5.http.ssl.DefaultClientTlsStrategy;
+import org.apache.hc.client5.http.ssl.TlsSocketStrategy;
 import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HttpEntity;
 import org.apache.hc.core5.http.HttpHeaders;
 import org.apache.hc.core5.http.HttpHost;
@@ -18,7 +30,11 @@ import org.apache.hc.core5.http.Method;
 import org.apache.hc.core5.http.ParseException;
 import org.apache.hc.core5.http.io.HttpClientResponseHandler;
 import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.io.entity.InputStreamEntity;
 import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.ssl.SSLContexts;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 import org.apache.kafka.common.config.AbstractConfig;
 import org.apache.kafka.connect.errors.ConnectException;
 import org.slf4j.Logger;
@@ -26,11 +42,31 @@ import org.slf4j.LoggerFactory;
 import inc.evil.kafka.connect.http.config.HttpSourceConfig;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
 /**
  * A reusable HTTP client for making requests.
@@ -41,6 +77,13 @@ public class HttpApiClient implements AutoCloseable {
 
     private static final Logger log = LoggerFactory.getLogger(HttpApiClient.class);
 
+    /**
+     * One TLS context for every client in the JVM, so that its session cache lets reconnects and
+     * restarted tasks resume TLS sessions with an abbreviated handshake.
+     */
+    private static final TlsSocketStrategy SHARED_TLS_STRATEGY = new DefaultClientTlsStrategy(SSLContexts.createDefault());
+    private static final TimeValue PREWARM_KEEP_ALIVE = TimeValue.ofMinutes(3);
+
     private final String requestParams;
     private final String requestBody;
     private final String headers;
@@ -51,6 +94,22 @@ public class HttpApiClient implements AutoCloseable {
     private final int proxyPort;
     private final int connectTimeoutMs;
     private final int readTimeoutMs;
+    private final OAuth2TokenProvider tokenProvider;
+    private final MirrorSelector mirrorSelector;
+    private final int hedgePercentile;
+    private final ExecutorService hedgeExecutor;
+    private final boolean coalesceRequests;
+    private final SharedResponseCache responseCache;
+    private final long cacheTtlMs;
+    private final String acceptEncoding;
+    private final MemoryBudget.Reservation memoryReservation;
+    private final int prewarmConnections;
+    private final RequestConfig requestConfig;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final Set<HttpUriRequestBase> activeRequests = ConcurrentHashMap.newKeySet();
+    private final Set<Future<?>> activeWaits = ConcurrentHashMap.newKeySet();
+    private volatile boolean aborted;
+    private boolean closed;
 
     private CloseableHttpClient httpClient;
 
@@ -68,6 +127,36 @@ public class HttpApiClient implements AutoCloseable {
         this.authBearer = config.getPassword(HttpSourceConfig.HTTP_AUTH_BEARER).value();
         this.connectTimeoutMs = config.getInt(HttpSourceConfig.HTTP_CONNECT_TIMEOUT_MS);
         this.readTimeoutMs = config.getInt(HttpSourceConfig.HTTP_READ_TIMEOUT_MS);
+        String tokenUrl = config.getString(HttpSourceConfig.HTTP_AUTH_OAUTH2_TOKEN_URL);
+        this.tokenProvider = tokenUrl == null || tokenUrl.isEmpty() ? null : OAuth2TokenProvider.acquire(config);
+        this.hedgePercentile = config.getInt(HttpSourceConfig.HTTP_HEDGE_PERCENTILE);
+        this.coalesceRequests = config.getBoolean(HttpSourceConfig.HTTP_REQUEST_COALESCING);
+        long cacheMaxBytes = config.getLong(HttpSourceConfig.HTTP_CACHE_MAX_BYTES);
+        this.responseCache = coalesceRequests || cacheMaxBytes > 0 ? SharedResponseCache.getInstance(cacheMaxBytes) : null;
+        this.cacheTtlMs = config.getLong(HttpSourceConfig.HTTP_CACHE_TTL_MS);
+        this.acceptEncoding = String.join(", ", config.getList(HttpSourceConfig.HTTP_ACCEPT_ENCODING));
+        long memoryBudgetBytes = config.getLong(HttpSourceConfig.HTTP_MEMORY_BUDGET_BYTES);
+        if (memoryBudgetBytes > 0) {
+            MemoryBudget.getInstance().setLimit(memoryBudgetBytes);
+            this.memoryReservation = MemoryBudget.getInstance().newReservation(readTimeoutMs);
+        } else {
+            this.memoryReservation = null;
+        }
+        List<String> mirrors = config.getList(HttpSourceConfig.HTTP_MIRROR_URLS);
+        if (mirrors.isEmpty()) {
+            this.mirrorSelector = null;
+            this.hedgeExecutor = null;
+        } else {
+            List<String> endpoints = new ArrayList<>();
+            endpoints.add(config.getString(HttpSourceConfig.HTTP_URL));
+            endpoints.addAll(mirrors);
+            this.mirrorSelector = new MirrorSelector(endpoints, readTimeoutMs);
+            this.hedgeExecutor = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "http-hedge-" + endpoints.get(0));
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
         RequestConfig.Builder requestConfigBuilder = RequestConfig.custom()
                 .setConnectTimeout(connectTimeoutMs, TimeUnit.MILLISECONDS)
                 .setResponseTimeout(readTimeoutMs, TimeUnit.MILLISECONDS);
@@ -78,14 +167,36 @@ public class HttpApiClient implements AutoCloseable {
             HttpHost proxy = new HttpHost(proxyHost, proxyPort);
             requestConfigBuilder.setProxy(proxy);
         }
+        this.requestConfig = requestConfigBuilder.build();
+
+        this.prewarmConnections = config.getInt(HttpSourceConfig.HTTP_PREWARM_CONNECTIONS);
+        int maxConnections = Math.max(prewarmConnections, config.getInt(HttpSourceConfig.HTTP_FETCH_CONCURRENCY));
+        long dnsCacheTtlMs = config.getLong(HttpSourceConfig.HTTP_DNS_CACHE_TTL_MS);
+        this.connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setTlsSocketStrategy(SHARED_TLS_STRATEGY)
+                .setDnsResolver(dnsCacheTtlMs > 0 ? new CachingDnsResolver(dnsCacheTtlMs) : SystemDefaultDnsResolver.INSTANCE)
+                .setMaxConnPerRoute(Math.max(5, maxConnections))
+                .setMaxConnTotal(Math.max(25, maxConnections))
+                .build();
 
         this.httpClient = HttpClients.custom()
-                .setDefaultRequestConfig(requestConfigBuilder.build())
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .disableContentCompression()
                 .build();
     }
 
     /**
      * Executes an HTTP request and returns the response body as a String.
+     * <p>
+     * When mirrors are configured and the URI belongs to the primary endpoint, the request is sent to the
+     * mirror with the lowest average latency, hedged to the next one if it runs past the configured latency
+     * percentile, and failed over to the remaining mirrors on I/O errors or server errors.
+     * </p>
+     * <p>
+     * With request coalescing or response caching enabled, identical requests issued anywhere in the worker
+     * share a single in-flight fetch and, while fresh, its cached response.
+     * </p>
      *
      * @param baseUri The base URI of the HTTP endpoint.
      * @param method  The HTTP method (e.g., "GET", "POST").
@@ -94,8 +205,262 @@ public class HttpApiClient implements AutoCloseable {
      * @throws URISyntaxException If the provided URI is invalid.
      */
     public String executeRequest(String baseUri, String method) throws IOException, URISyntaxException {
+        return executeRequest(baseUri, method, null);
+    }
+
+    /**
+     * Executes an HTTP request with the given body instead of the configured {@code http.request.body}.
+     *
+     * @param baseUri The base URI of the HTTP endpoint.
+     * @param method  The HTTP method (e.g., "GET", "POST").
+     * @param body    The request body for POST, PUT and PATCH requests, or null for the configured one.
+     * @return The response body as a String if the request is successful.
+     * @throws IOException        If an I/O error occurs during the request.
+     * @throws URISyntaxException If the provided URI is invalid.
+     * @see #executeRequest(String, String)
+     */
+    public String executeRequest(String baseUri, String method, String body) throws IOException, URISyntaxException {
         log.info("Polling API at {}", baseUri);
-        return httpClient.execute(createHttpRequest(baseUri, Method.normalizedValueOf(method.toUpperCase())), new StringResponseHandler());
+        Method httpMethod = Method.normalizedValueOf(method.toUpperCase());
+        if (responseCache == null || httpMethod != Method.GET && httpMethod != Method.HEAD) {
+            return fetch(baseUri, httpMethod, body).body;
+        }
+        String key = requestKey(createHttpRequest(baseUri, httpMethod, body));
+        return responseCache.fetch(key, coalesceRequests, cacheTtlMs, () -> fetch(baseUri, httpMethod, body), this::awaitShared).body;
+    }
+
+    /**
+     * Waits for an identical request of another client while keeping track of the wait, so that {@link #abort()} can cancel it.
+     */
+    private FetchResult awaitShared(CompletableFuture<FetchResult> shared) throws IOException, URISyntaxException {
+        activeWaits.add(shared);
+        try {
+            if (aborted) {
+                shared.cancel(false);
+            }
+            return SharedResponseCache.await(shared);
+        } finally {
+            activeWaits.remove(shared);
+        }
+    }
+
+    /**
+     * Fetches the given URI, going through the mirrors when they are configured and the URI belongs to the primary endpoint.
+     *
+     * @param baseUri The base URI of the HTTP endpoint.
+     * @param httpMethod The HTTP method.
+     * @param body The request body, or null for the configured one.
+     * @return The fetched response.
+     */
+    private FetchResult fetch(String baseUri, Method httpMethod, String body) throws IOException, URISyntaxException {
+        if (mirrorSelector == null || !mirrorSelector.routes(baseUri)) {
+            return new Attempt(null, baseUri, httpMethod, body).call();
+        }
+        List<String> ranked = mirrorSelector.ranked();
+        long hedgeDelayMs = hedgePercentile > 0 ? mirrorSelector.hedgeDelayMs(hedgePercentile) : -1L;
+        if (hedgeDelayMs >= 0) {
+            return executeHedged(baseUri, httpMethod, body, ranked, hedgeDelayMs);
+        }
+        RuntimeException lastStatusError = null;
+        IOException lastIoError = null;
+        for (String endpoint : ranked) {
+            try {
+                return new Attempt(endpoint, mirrorSelector.rewrite(baseUri, endpoint), httpMethod, body).call();
+            } catch (IOException e) {
+                log.warn("Request to mirror {} failed. Trying the next one.", endpoint, e);
+                lastIoError = e;
+            } catch (HttpStatusException e) {
+                if (!e.isServerError()) {
+                    throw e;
+                }
+                log.warn("Mirror {} answered with status code {}. Trying the next one.", endpoint, e.getStatusCode());
+                lastStatusError = e;
+            }
+        }
+        if (lastIoError != null) {
+            throw lastIoError;
+        }
+        throw lastStatusError;
+    }
+
+    /**
+     * Sends the request to the fastest mirror and, if no response arrived within {@code hedgeDelayMs},
+     * a duplicate to the next mirror. The first successful response wins and the other request is cancelled.
+     * Further mirrors are only tried once every running request has failed.
+     */
+    private FetchResult executeHedged(String baseUri, Method method, String body, List<String> ranked, long hedgeDelayMs) throws IOException, URISyntaxException {
+        CompletionService<FetchResult> completionService = new ExecutorCompletionService<>(hedgeExecutor);
+        Map<Future<FetchResult>, Attempt> running = new HashMap<>();
+        Exception firstError = null;
+        int next = 0;
+        try {
+            Attempt primary = new Attempt(ranked.get(next), mirrorSelector.rewrite(baseUri, ranked.get(next)), method, body);
+            running.put(completionService.submit(primary), primary);
+            next++;
+            while (!running.isEmpty()) {
+                Future<FetchResult> done = next == 1 && ranked.size() > 1
+                        ? completionService.poll(hedgeDelayMs, TimeUnit.MILLISECONDS)
+                        : completionService.take();
+                if (done == null) {
+                    log.debug("No response from {} within {} ms. Hedging request to {}.", ranked.get(0), hedgeDelayMs, ranked.get(next));
+                } else {
+                    Attempt attempt = running.remove(done);
+                    try {
+                        return done.get();
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        if (cause instanceof Error) {
+                            throw (Error) cause;
+                        }
+                        if (cause instanceof HttpStatusException && !((HttpStatusException) cause).isServerError()) {
+                            throw (HttpStatusException) cause;
+                        }
+                        log.warn("Request to mirror {} failed.", attempt.endpoint, cause);
+                        firstError = firstError == null ? (Exception) cause : firstError;
+                        if (!running.isEmpty() || next >= ranked.size()) {
+                            continue;
+                        }
+                    }
+                }
+                Attempt hedge = new Attempt(ranked.get(next), mirrorSelector.rewrite(baseUri, ranked.get(next)), method, body);
+                running.put(completionService.submit(hedge), hedge);
+                next++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a mirror to respond.");
+        } finally {
+            for (Map.Entry<Future<FetchResult>, Attempt> loser : running.entrySet()) {
+                loser.getValue().cancel();
+                loser.getKey().cancel(true);
+            }
+        }
+        if (firstError instanceof IOException) {
+            throw (IOException) firstError;
+        }
+        if (firstError instanceof URISyntaxException) {
+            throw (URISyntaxException) firstError;
+        }
+        throw (RuntimeException) firstError;
+    }
+
+    /**
+     * Fetches a byte range of a line-delimited file and splits it into lines while streaming.
+     * <p>
+     * The range is requested without content encoding, so that positions refer to the bytes of the file itself.
+     * When a strong entity tag is given it is sent as {@code If-Range}; if the file has changed since, the returned
+     * chunk is marked as replaced and the body is discarded. Weak entity tags are never sent, since {@code If-Range}
+     * requires a strong validator. A file that became shorter than the position is reported as replaced as well.
+     * </p>
+     *
+     * @param uri      The URI of the file.
+     * @param position The byte position to start reading at.
+     * @param length   The maximum number of bytes to fetch.
+     * @param etag     The entity tag of the file as last seen, or null.
+     * @return The complete lines contained in the range.
+     * @throws IOException        If an I/O error occurs during the request.
+     * @throws URISyntaxException If the provided URI is invalid.
+     */
+    public FileChunk executeRangeRequest(String uri, long position, long length, String etag) throws IOException, URISyntaxException {
+        log.info("Fetching bytes {}-{} of {}", position, position + length - 1, uri);
+        String ifRange = etag != null && !etag.startsWith("W/") ? etag : null;
+        return executeAuthorized(uri,
+                () -> {
+                    HttpUriRequestBase request = createHttpRequest(uri, Method.GET, null);
+                    request.setHeader(HttpHeaders.RANGE, "bytes=" + position + "-" + (position + length - 1));
+                    request.setHeader(HttpHeaders.ACCEPT_ENCODING, "identity");
+                    if (ifRange != null) {
+                        request.setHeader(HttpHeaders.IF_RANGE, ifRange);
+                    }
+                    return request;
+                },
+                new RangeResponseHandler(position, ifRange != null, TransferMetrics.endpointOf(uri), memoryReservation),
+                request -> {
+                });
+    }
+
+    /**
+     * Opens the configured number of connections to the endpoint and returns them to the pool, so that the
+     * first poll does not pay for DNS resolution and the TCP and TLS handshakes. Failures are only logged,
+     * since the connections are opened again on demand. Skipped when a proxy is configured.
+     *
+     * @param uri The URI of the endpoint.
+     */
+    public void prewarm(String uri) {
+        if (prewarmConnections <= 0) {
+            return;
+        }
+        if (requestConfig.getProxy() != null) {
+            log.info("Not pre-warming connections to {} through a proxy.", uri);
+            return;
+        }
+        long start = System.nanoTime();
+        List<ConnectionEndpoint> endpoints = new ArrayList<>();
+        try {
+            HttpClientContext context = HttpClientContext.create();
+            context.setRequestConfig(requestConfig);
+            HttpRoute route = new DefaultRoutePlanner(null).determineRoute(HttpHost.create(new URI(uri)), context);
+            Timeout timeout = Timeout.ofMilliseconds(connectTimeoutMs);
+            for (int i = 0; i < prewarmConnections; i++) {
+                ConnectionEndpoint endpoint = connectionManager.lease("prewarm-" + i, route, timeout, null).get(timeout);
+                endpoints.add(endpoint);
+                if (!endpoint.isConnected()) {
+                    connectionManager.connect(endpoint, timeout, context);
+                }
+            }
+            log.info("Pre-warmed {} connections to {} in {} ms.", endpoints.size(), route.getTargetHost(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Failed to pre-warm connections to {}. They are opened on demand instead.", uri, e);
+        } finally {
+            for (ConnectionEndpoint endpoint : endpoints) {
+                connectionManager.release(endpoint, null, endpoint.isConnected() ? PREWARM_KEEP_ALIVE : null);
+            }
+        }
+    }
+
+    /**
+     * Sends a request, retrying once with a refreshed token if an OAuth2 token is rejected.
+     *
+     * @param uri            The full request URI, used for logging.
+     * @param requestFactory Creates the request; called again for the retry.
+     * @param handler        Converts the response.
+     * @param tracker        Notified of every request sent, so that it can be cancelled.
+     * @return The converted response.
+     */
+    private <T> T executeAuthorized(String uri, RequestFactory requestFactory, HttpClientResponseHandler<T> handler,
+                                    Consumer<HttpUriRequestBase> tracker) throws IOException, URISyntaxException {
+        HttpUriRequestBase request = requestFactory.create();
+        tracker.accept(request);
+        try {
+            return execute(request, handler);
+        } catch (HttpStatusException e) {
+            if (tokenProvider == null || e.getStatusCode() != HttpStatus.SC_UNAUTHORIZED) {
+                throw e;
+            }
+            log.info("Access token was rejected by {}. Refreshing it and retrying once.", uri);
+            tokenProvider.refreshIfCurrent(bearerToken(request));
+            HttpUriRequestBase retry = requestFactory.create();
+            tracker.accept(retry);
+            return execute(retry, handler);
+        }
+    }
+
+    /**
+     * Sends a request while keeping track of it, so that {@link #abort()} can cancel it.
+     */
+    private <T> T execute(HttpUriRequestBase request, HttpClientResponseHandler<T> handler) throws IOException {
+        activeRequests.add(request);
+        try {
+            if (aborted) {
+                request.cancel();
+            }
+            return httpClient.execute(request, handler);
+        } finally {
+            activeRequests.remove(request);
+        }
     }
 
     /**
@@ -104,10 +469,12 @@ public class HttpApiClient implements AutoCloseable {
      *
      * @param baseUri The base URI for the request.
      * @param method  The HTTP method to use.
+     * @param body    The request body, or null for the configured one.
      * @return A configured HttpUriRequestBase object.
+     * @throws IOException        If an OAuth2 access token cannot be obtained.
      * @throws URISyntaxException If the URI is invalid.
      */
-    private HttpUriRequestBase createHttpRequest(String baseUri, Method method) throws URISyntaxException {
+    private HttpUriRequestBase createHttpRequest(String baseUri, Method method, String body) throws IOException, URISyntaxException {
         URI uri = buildUriWithParams(baseUri);
         HttpUriRequestBase request;
         switch (method) {
@@ -116,15 +483,15 @@ public class HttpApiClient implements AutoCloseable {
                 break;
             case POST:
                 request = new HttpPost(uri);
-                addBody(request);
+                addBody(request, body != null ? body : requestBody);
                 break;
             case PUT:
                 request = new HttpPut(uri);
-                addBody(request);
+                addBody(request, body != null ? body : requestBody);
                 break;
             case PATCH:
                 request = new HttpPatch(uri);
-                addBody(request);
+                addBody(request, body != null ? body : requestBody);
                 break;
             case DELETE:
                 request = new HttpDelete(uri);
@@ -133,6 +500,9 @@ public class HttpApiClient implements AutoCloseable {
                 throw new UnsupportedOperationException("Unsupported HTTP method: " + method);
         }
         addHeaders(request);
+        if (!acceptEncoding.isEmpty() && !request.containsHeader(HttpHeaders.ACCEPT_ENCODING)) {
+            request.addHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
         addAuth(request);
         log.debug("Computed HTTP request={}", request);
         return request;
@@ -145,13 +515,14 @@ public class HttpApiClient implements AutoCloseable {
      * the body attached. For GET and DELETE requests, this method does nothing.
      *
      * @param request The HTTP request to which the body should be added.
+     * @param body    The body to add.
      */
-    private void addBody(HttpUriRequestBase request) {
-        if (requestBody == null || requestBody.isEmpty()) {
+    private void addBody(HttpUriRequestBase request, String body) {
+        if (body == null || body.isEmpty()) {
             return;
         }
         if (request instanceof HttpPost || request instanceof HttpPut || request instanceof HttpPatch) {
-            StringEntity entity = new StringEntity(requestBody, StandardCharsets.UTF_8);
+            StringEntity entity = new StringEntity(body, StandardCharsets.UTF_8);
             request.setEntity(entity);
         }
     }
@@ -201,12 +572,16 @@ public class HttpApiClient implements AutoCloseable {
     }
 
     /**
-     * Adds authentication headers (Bearer or Basic) to the request based on configuration.
+     * Adds authentication headers (OAuth2, Bearer or Basic) to the request based on configuration.
+     * OAuth2 tokens come from the shared {@link OAuth2TokenProvider} cache.
      *
      * @param request The request object.
+     * @throws IOException If an OAuth2 access token cannot be obtained.
      */
-    private void addAuth(HttpUriRequestBase request) {
-        if (authBearer != null && !authBearer.isEmpty()) {
+    private void addAuth(HttpUriRequestBase request) throws IOException {
+        if (tokenProvider != null) {
+            request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + tokenProvider.getAccessToken());
+        } else if (authBearer != null && !authBearer.isEmpty()) {
             request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + authBearer);
         } else if (authUsername != null && !authUsername.isEmpty() && authPassword != null && !authPassword.isEmpty()) {
             String auth = authUsername + ":" + authPassword;
@@ -216,17 +591,101 @@ public class HttpApiClient implements AutoCloseable {
     }
 
     /**
-     * Closes the underlying HTTP client, releasing all resources.
+     * Builds the key identifying byte-identical requests: method, URI, headers and a hash of the body.
+     *
+     * @param request The fully prepared request.
+     * @return The request key.
+     * @throws IOException If the request body cannot be read.
+     */
+    private static String requestKey(HttpUriRequestBase request) throws IOException {
+        StringBuilder key = new StringBuilder(request.getMethod());
+        try {
+            key.append(' ').append(request.getUri());
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid request URI.", e);
+        }
+        for (Header header : request.getHeaders()) {
+            key.append('\n').append(header.getName().toLowerCase()).append(':').append(header.getValue());
+        }
+        HttpEntity entity = request.getEntity();
+        if (entity != null) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(EntityUtils.toByteArray(entity));
+                key.append('\n').append(Base64.getEncoder().encodeToString(digest));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available.", e);
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Extracts the bearer token sent with the given request.
+     *
+     * @param request The request that was sent.
+     * @return The bearer token, or an empty string if none was sent.
+     */
+    private static String bearerToken(HttpUriRequestBase request) {
+        Header authorization = request.getFirstHeader(HttpHeaders.AUTHORIZATION);
+        if (authorization == null || !authorization.getValue().startsWith("Bearer ")) {
+            return "";
+        }
+        return authorization.getValue().substring("Bearer ".length());
+    }
+
+    /**
+     * Closes the underlying HTTP client, releasing all resources. Further calls have no effect, so that the
+     * reference to the shared OAuth2 token provider is released only once.
      *
      * @throws IOException If an I/O error occurs during client shutdown.
      */
     @Override
-    public void close() throws IOException {
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        abort();
+        releaseReservedMemory();
+        if (hedgeExecutor != null) {
+            hedgeExecutor.shutdownNow();
+        }
+        if (tokenProvider != null) {
+            tokenProvider.close();
+        }
         if (httpClient != null) {
             httpClient.close();
         }
     }
 
+    /**
+     * Cancels every request in flight, as well as any wait for the worker memory budget or for an identical
+     * request of another task, and makes further requests fail immediately. Safe to call from another thread
+     * than the one executing requests, which then sees an {@link IOException}.
+     */
+    public void abort() {
+        aborted = true;
+        if (memoryReservation != null) {
+            memoryReservation.cancel();
+        }
+        for (HttpUriRequestBase request : activeRequests) {
+            request.cancel();
+        }
+        for (Future<?> wait : activeWaits) {
+            wait.cancel(false);
+        }
+    }
+
+    /**
+     * Returns the memory reserved for the responses read since the last call to the worker memory budget.
+     * Called once the records built from them have been handed off.
+     */
+    public void releaseReservedMemory() {
+        if (memoryReservation != null) {
+            memoryReservation.release();
+        }
+    }
+
     /**
      * A simple response handler that consumes the response entity and returns
      * its content as a String, while also handling status codes.
@@ -250,7 +709,289 @@ public class HttpApiClient implements AutoCloseable {
                     throw new ConnectException("Failed to parse HTTP response.", e);
                 }
             } else {
-                throw new ConnectException("HTTP request failed with status code: " + statusCode);
+                throw new HttpStatusException(statusCode);
+            }
+        }
+    }
+
+    /**
+     * Converts a successful response into a {@link FetchResult}, keeping the freshness lifetime
+     * announced by its {@code Cache-Control} header.
+     * <p>
+     * Compressed bodies are decoded while they are read, so no decompressed copy is buffered besides the
+     * resulting String. Wire and decoded byte counts are recorded in {@link TransferMetrics}.
+     * </p>
+     */
+    static class FetchResultHandler implements HttpClientResponseHandler<FetchResult> {
+        private final String endpoint;
+        private final MemoryBudget.Reservation reservation;
+
+        /**
+         * @param endpoint    The endpoint tag for {@link TransferMetrics}.
+         * @param reservation Receives the memory reserved for the body once it was read; null without a memory budget.
+         */
+        FetchResultHandler(String endpoint, MemoryBudget.Reservation reservation) {
+            this.endpoint = endpoint;
+            this.reservation = reservation;
+        }
+
+        @Override
+        public FetchResult handleResponse(ClassicHttpResponse response) throws IOException {
+            int statusCode = response.getCode();
+            if (statusCode < HttpStatus.SC_OK || statusCode >= HttpStatus.SC_REDIRECTION) {
+                throw new HttpStatusException(statusCode);
+            }
+            String body = readBody(response);
+            Header cacheControl = response.getFirstHeader(HttpHeaders.CACHE_CONTROL);
+            return new FetchResult(body, SharedResponseCache.freshnessLifetimeMs(cacheControl == null ? null : cacheControl.getValue()));
+        }
+
+        private String readBody(ClassicHttpResponse response) throws IOException {
+            HttpEntity entity = response.getEntity();
+            if (entity == null) {
+                return "";
+            }
+            CountingInputStream wire = new CountingInputStream(entity.getContent());
+            CountingInputStream decoded = null;
+            MemoryBudget.Reservation bodyReservation = reservation == null ? null : reservation.child();
+            boolean read = false;
+            try {
+                String encoding = contentEncoding(response, entity);
+                InputStream in = decode(encoding, wire);
+                if (bodyReservation != null) {
+                    in = bodyReservation.track(in, encoding.isEmpty() || encoding.equals("identity") ? entity.getContentLength() : -1L);
+                }
+                decoded = new CountingInputStream(in);
+                String body = EntityUtils.toString(new InputStreamEntity(decoded, -1, ContentType.parseLenient(entity.getContentType())));
+                read = true;
+                return body;
+            } catch (ParseException e) {
+                throw new ConnectException("Failed to parse HTTP response.", e);
+            } finally {
+                TransferMetrics.record(endpoint, wire.getCount(), decoded == null ? 0L : decoded.getCount());
+                settle(bodyReservation, reservation, read);
+            }
+        }
+
+        private static String contentEncoding(ClassicHttpResponse response, HttpEntity entity) {
+            Header header = response.getFirstHeader(HttpHeaders.CONTENT_ENCODING);
+            String encoding = header != null ? header.getValue() : entity.getContentEncoding();
+            return encoding == null ? "" : encoding.trim().toLowerCase();
+        }
+
+        private static InputStream decode(String encoding, InputStream wire) throws IOException {
+            switch (encoding) {
+                case "":
+                case "identity":
+                    return wire;
+                case "gzip":
+                case "x-gzip":
+                    return new GZIPInputStream(wire, 8192);
+                case "deflate":
+                    return new DeflateInputStream(wire);
+                default:
+                    wire.close();
+                    throw new ConnectException("Unsupported Content-Encoding: " + encoding);
+            }
+        }
+    }
+
+    /**
+     * Keeps the memory reserved for a body until the caller releases it, or releases it at once if the body could not be read.
+     */
+    private static void settle(MemoryBudget.Reservation bodyReservation, MemoryBudget.Reservation reservation, boolean read) {
+        if (bodyReservation == null) {
+            return;
+        }
+        if (read) {
+            bodyReservation.moveTo(reservation);
+        } else {
+            bodyReservation.release();
+        }
+    }
+
+    /**
+     * Reads a {@code 206 Partial Content} response into a {@link FileChunk}.
+     */
+    static class RangeResponseHandler implements HttpClientResponseHandler<FileChunk> {
+        private final long position;
+        private final boolean conditional;
+        private final String endpoint;
+        private final MemoryBudget.Reservation reservation;
+
+        /**
+         * @param position    The requested start position.
+         * @param conditional Whether the request carried an {@code If-Range} header.
+         * @param endpoint    The endpoint tag for {@link TransferMetrics}.
+         * @param reservation Receives the memory reserved for the range once it was read; null without a memory budget.
+         */
+        RangeResponseHandler(long position, boolean conditional, String endpoint, MemoryBudget.Reservation reservation) {
+            this.position = position;
+            this.conditional = conditional;
+            this.endpoint = endpoint;
+            this.reservation = reservation;
+        }
+
+        @Override
+        public FileChunk handleResponse(ClassicHttpResponse response) throws IOException {
+            int statusCode = response.getCode();
+            Header etagHeader = response.getFirstHeader(HttpHeaders.ETAG);
+            String etag = etagHeader == null ? null : etagHeader.getValue();
+            Header contentRange = response.getFirstHeader(HttpHeaders.CONTENT_RANGE);
+            if (statusCode == HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE) {
+                long totalLength = contentRange == null ? position : totalLength(contentRange.getValue());
+                if (totalLength >= 0 && totalLength < position) {
+                    return FileChunk.replaced(etag);
+                }
+                return FileChunk.empty(position, totalLength, etag);
+            }
+            if (statusCode == HttpStatus.SC_OK && conditional) {
+                response.close();
+                return FileChunk.replaced(etag);
+            }
+            if (statusCode == HttpStatus.SC_OK) {
+                throw new ConnectException("The endpoint does not support Range requests, which file mode requires.");
+            }
+            if (statusCode != HttpStatus.SC_PARTIAL_CONTENT) {
+                throw new HttpStatusException(statusCode);
+            }
+            if (contentRange == null) {
+                throw new ConnectException("Partial content response is missing the Content-Range header.");
+            }
+            HttpEntity entity = response.getEntity();
+            if (entity == null) {
+                return FileChunk.empty(position, totalLength(contentRange.getValue()), etag);
+            }
+            MemoryBudget.Reservation rangeReservation = reservation == null ? null : reservation.child();
+            boolean read = false;
+            try (CountingInputStream in = new CountingInputStream(rangeReservation == null
+                    ? entity.getContent()
+                    : rangeReservation.track(entity.getContent(), entity.getContentLength()))) {
+                try {
+                    FileChunk chunk = FileChunk.read(in, position, totalLength(contentRange.getValue()), etag);
+                    read = true;
+                    return chunk;
+                } finally {
+                    TransferMetrics.record(endpoint, in.getCount(), in.getCount());
+                }
+            } finally {
+                settle(rangeReservation, reservation, read);
+            }
+        }
+
+        /**
+         * @param contentRange A {@code Content-Range} value such as {@code bytes 0-99/1234} or {@code bytes *}{@code /1234}.
+         * @return The complete length, or -1 if unknown.
+         */
+        static long totalLength(String contentRange) {
+            int slash = contentRange.lastIndexOf('/');
+            String total = slash < 0 ? "*" : contentRange.substring(slash + 1).trim();
+            if (total.equals("*")) {
+                return -1L;
+            }
+            try {
+                return Long.parseLong(total);
+            } catch (NumberFormatException e) {
+                throw new ConnectException("Invalid Content-Range header: " + contentRange, e);
+            }
+        }
+    }
+
+    /**
+     * Creates the request to send. Used so that a request can be recreated with a fresh token.
+     */
+    @FunctionalInterface
+    interface RequestFactory {
+        HttpUriRequestBase create() throws IOException, URISyntaxException;
+    }
+
+    /**
+     * The body of a successful response together with how long it may be cached.
+     */
+    static final class FetchResult {
+        final String body;
+        final long maxAgeMs;
+
+        /**
+         * @param body     The response body.
+         * @param maxAgeMs The freshness lifetime from {@code Cache-Control}, 0 if it must not be cached, -1 if unspecified.
+         */
+        FetchResult(String body, long maxAgeMs) {
+            this.body = body;
+            this.maxAgeMs = maxAgeMs;
+        }
+    }
+
+    /**
+     * Signals a non-successful HTTP status code, so that callers can refresh a rejected OAuth2 token
+     * or fail over to another mirror on server errors.
+     */
+    static class HttpStatusException extends ConnectException {
+        private final int statusCode;
+
+        HttpStatusException(int statusCode) {
+            super("HTTP request failed with status code: " + statusCode);
+            this.statusCode = statusCode;
+        }
+
+        int getStatusCode() {
+            return statusCode;
+        }
+
+        boolean isServerError() {
+            return statusCode >= HttpStatus.SC_SERVER_ERROR;
+        }
+    }
+
+    /**
+     * A single request to one endpoint. Records the latency of the endpoint when mirrors are in use
+     * and can be cancelled, which aborts the underlying connection.
+     */
+    private final class Attempt implements Callable<FetchResult> {
+        private final String endpoint;
+        private final String uri;
+        private final Method method;
+        private final String body;
+        private volatile HttpUriRequestBase request;
+        private volatile boolean cancelled;
+
+        private Attempt(String endpoint, String uri, Method method, String body) {
+            this.endpoint = endpoint;
+            this.uri = uri;
+            this.method = method;
+            this.body = body;
+        }
+
+        @Override
+        public FetchResult call() throws IOException, URISyntaxException {
+            long start = System.nanoTime();
+            try {
+                FetchResult result = executeAuthorized(uri, () -> createHttpRequest(uri, method, body),
+                        new FetchResultHandler(TransferMetrics.endpointOf(uri), memoryReservation), this::track);
+                if (endpoint != null) {
+                    mirrorSelector.recordSuccess(endpoint, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                }
+                return result;
+            } catch (IOException | HttpStatusException e) {
+                if (endpoint != null && !cancelled && !(e instanceof HttpStatusException && !((HttpStatusException) e).isServerError())) {
+                    mirrorSelector.recordFailure(endpoint);
+                }
+                throw e;
+            }
+        }
+
+        private void track(HttpUriRequestBase request) {
+            this.request = request;
+            if (cancelled) {
+                request.cancel();
+            }
+        }
+
+        private void cancel() {
+            cancelled = true;
+            HttpUriRequestBase current = request;
+            if (current != null) {
+                current.cancel();
             }
         }
     }
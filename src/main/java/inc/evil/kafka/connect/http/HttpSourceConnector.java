@@ -2,14 +2,25 @@ package inc.evil.kafka.connect.http;
 
 import org.apache.kafka.common.config.ConfigDef;
 import org.apache.kafka.connect.connector.Task;
+import org.apache.kafka.connect.source.ConnectorTransactionBoundaries;
+import org.apache.kafka.connect.source.ExactlyOnceSupport;
 import org.apache.kafka.connect.source.SourceConnector;
+import org.apache.kafka.connect.util.ConnectorUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import inc.evil.kafka.connect.http.config.HttpSourceConfig;
 
+import java.io.IOException;
+import java.net.URI;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import static inc.evil.kafka.connect.http.config.HttpSourceConfig.VERSION;
 
@@ -26,6 +37,13 @@ public class HttpSourceConnector extends SourceConnector {
     private static final Logger log = LoggerFactory.getLogger(HttpSourceConnector.class);
 
     private Map<String, String> configProps = null;
+    private String discoveryUrl;
+    private JsonRecordSplitter discoveryParser;
+    private HttpApiClient apiClient;
+    private ScheduledExecutorService discoveryScheduler;
+    private volatile List<String> discoveredUrls;
+    private volatile boolean tasksConfigured;
+    private volatile List<String> configuredUrls;
 
     /**
      * Get the version of this connector.
@@ -51,6 +69,10 @@ public class HttpSourceConnector extends SourceConnector {
      * Start this connector. This method is called by the Kafka Connect framework when the
      * connector is first started. It is used to initialize any necessary resources, such as
      * storing the configuration properties.
+     * <p>
+     * With a discovery URL configured, the endpoint index is fetched once right away, so that the first
+     * task configurations already include the endpoints, and then periodically in the background.
+     * </p>
      *
      * @param props The configuration properties for this connector.
      */
@@ -58,6 +80,65 @@ public class HttpSourceConnector extends SourceConnector {
     public void start(Map<String, String> props) {
         log.info("Starting HttpSourceConnector {}", props);
         configProps = props;
+        HttpSourceConfig config = new HttpSourceConfig(props);
+        discoveryUrl = config.getString(HttpSourceConfig.HTTP_DISCOVERY_URL);
+        if (discoveryUrl.isEmpty()) {
+            return;
+        }
+        discoveryParser = new JsonRecordSplitter(
+                config.getString(HttpSourceConfig.HTTP_DISCOVERY_POINTER),
+                config.getString(HttpSourceConfig.HTTP_DISCOVERY_URL_FIELD));
+        if (apiClient == null) {
+            apiClient = new HttpApiClient(config);
+        }
+        refreshEndpoints();
+        long intervalMs = config.getLong(HttpSourceConfig.HTTP_DISCOVERY_INTERVAL_MS);
+        discoveryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "http-discovery-" + discoveryUrl);
+            thread.setDaemon(true);
+            return thread;
+        });
+        discoveryScheduler.scheduleWithFixedDelay(this::refreshEndpoints, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Fetches the endpoint index and requests a task reconfiguration if the endpoints differ from those the
+     * tasks were last configured with, including the first successful discovery after a failed one had left
+     * the tasks with the configured endpoints. Failures are logged and the current endpoints are kept until
+     * the next attempt.
+     *
+     * @return Whether the endpoints changed.
+     */
+    boolean refreshEndpoints() {
+        try {
+            String index = apiClient.executeRequest(discoveryUrl, "GET");
+            Set<String> found = new TreeSet<>();
+            discoveryParser.forEach(index, (element, json) -> {
+                String endpoint = element.isTextual() ? element.asText() : discoveryParser.keyOf(element);
+                if (endpoint == null || endpoint.isEmpty()) {
+                    log.warn("Ignoring discovered element without endpoint URL: {}", json);
+                    return;
+                }
+                found.add(URI.create(discoveryUrl).resolve(endpoint).toString());
+            });
+            List<String> endpoints = new ArrayList<>(found);
+            List<String> previous = discoveredUrls;
+            discoveredUrls = endpoints;
+            boolean changed = !endpoints.equals(previous);
+            if (changed) {
+                log.info("Discovered {} endpoints.", endpoints.size());
+            } else {
+                log.debug("Discovered endpoints are unchanged: {}", endpoints.size());
+            }
+            if (tasksConfigured && !endpoints.equals(configuredUrls)) {
+                log.info("Discovered endpoints differ from those of the tasks. Requesting task reconfiguration.");
+                context.requestTaskReconfiguration();
+            }
+            return changed;
+        } catch (Exception e) {
+            log.warn("Failed to discover endpoints from {}. Keeping the current endpoints.", discoveryUrl, e);
+            return false;
+        }
     }
 
     /**
@@ -68,6 +149,50 @@ public class HttpSourceConnector extends SourceConnector {
     @Override
     public void stop() {
         log.info("Stopping HttpSourceConnector");
+        if (discoveryScheduler != null) {
+            discoveryScheduler.shutdownNow();
+        }
+        if (apiClient != null) {
+            try {
+                apiClient.close();
+            } catch (IOException e) {
+                log.error("Failed to close HTTP client.", e);
+            }
+            apiClient = null;
+        }
+        discoveredUrls = null;
+        configuredUrls = null;
+        tasksConfigured = false;
+    }
+
+    /**
+     * Every record carries the offset from which its task resumes, so a restarted task neither skips nor
+     * re-emits records once the records and their offsets are committed in one transaction. Snapshot diffing
+     * and the deduplication window keep their state in memory only, so with either enabled a restarted task
+     * republishes records and exactly-once delivery cannot be guaranteed.
+     *
+     * @param connectorConfig The connector configuration.
+     * @return {@link ExactlyOnceSupport#SUPPORTED}, or {@link ExactlyOnceSupport#UNSUPPORTED} with diffing or deduplication.
+     */
+    @Override
+    public ExactlyOnceSupport exactlyOnceSupport(Map<String, String> connectorConfig) {
+        HttpSourceConfig config = new HttpSourceConfig(connectorConfig);
+        if (config.getBoolean(HttpSourceConfig.HTTP_DIFF_ENABLED) || config.getLong(HttpSourceConfig.HTTP_DEDUP_WINDOW_MS) > 0) {
+            return ExactlyOnceSupport.UNSUPPORTED;
+        }
+        return ExactlyOnceSupport.SUPPORTED;
+    }
+
+    /**
+     * With {@code transaction.boundary=connector}, the tasks commit a transaction after each fetched
+     * response: a page, a file range, an endpoint or an ID batch.
+     *
+     * @param connectorConfig The connector configuration.
+     * @return {@link ConnectorTransactionBoundaries#SUPPORTED}.
+     */
+    @Override
+    public ConnectorTransactionBoundaries canDefineTransactionBoundaries(Map<String, String> connectorConfig) {
+        return ConnectorTransactionBoundaries.SUPPORTED;
     }
 
     /**
@@ -85,7 +210,10 @@ public class HttpSourceConnector extends SourceConnector {
      * <p>
      * This method is responsible for distributing the connector's configuration among the
      * requested number of tasks. In this implementation, each task receives the same
-     * configuration.
+     * configuration, except that the endpoints listed in {@code http.urls}, if any, are
+     * divided among the tasks. Discovered endpoints take the place of {@code http.urls};
+     * while discovery lists none, no tasks are configured. ID batches are dealt out to the tasks
+     * round-robin, each task reading the IDs itself.
      * </p>
      *
      * @param maxTasks The maximum number of tasks that should be configured.
@@ -94,11 +222,47 @@ public class HttpSourceConnector extends SourceConnector {
      */
     @Override
     public List<Map<String, String>> taskConfigs(int maxTasks) {
+        List<String> discovered = discoveredUrls;
+        configuredUrls = discovered;
+        tasksConfigured = true;
+        List<String> urls = discovered != null ? discovered : new HttpSourceConfig(configProps).getList(HttpSourceConfig.HTTP_URLS);
         List<Map<String, String>> taskConfigs = new ArrayList<>();
+        if (discovered != null && discovered.isEmpty()) {
+            log.warn("Discovery at {} lists no endpoints. No tasks are configured.", discoveryUrl);
+            return taskConfigs;
+        }
+        if (!urls.isEmpty()) {
+            for (List<String> group : ConnectorUtils.groupPartitions(urls, Math.min(maxTasks, urls.size()))) {
+                Map<String, String> taskConfig = new HashMap<>(configProps);
+                taskConfig.put(HttpSourceConfig.HTTP_URLS, String.join(",", group));
+                taskConfigs.add(taskConfig);
+            }
+            return taskConfigs;
+        }
+        HttpSourceConfig config = new HttpSourceConfig(configProps);
+        if (!config.getList(HttpSourceConfig.HTTP_BATCH_IDS).isEmpty() || !config.getString(HttpSourceConfig.HTTP_BATCH_IDS_FILE).isEmpty()) {
+            for (int i = 0; i < maxTasks; i++) {
+                Map<String, String> taskConfig = new HashMap<>(configProps);
+                taskConfig.put(HttpSourceConfig.HTTP_BATCH_TASK_INDEX, String.valueOf(i));
+                taskConfig.put(HttpSourceConfig.HTTP_BATCH_TASK_COUNT, String.valueOf(maxTasks));
+                taskConfigs.add(taskConfig);
+            }
+            return taskConfigs;
+        }
         for (int i = 0; i < maxTasks; i++) {
             taskConfigs.add(configProps);
         }
         return taskConfigs;
     }
 
+    /**
+     * Set the HTTP API client used for discovery. This method is primarily for testing; a client set
+     * before {@link #start(Map)} is used for the first discovery instead of creating one.
+     *
+     * @param apiClient The new HTTP API client instance.
+     */
+    void setApiClient(HttpApiClient apiClient) {
+        this.apiClient = apiClient;
+    }
+
 }
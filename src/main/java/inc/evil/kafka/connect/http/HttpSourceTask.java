@@ -1,21 +1,42 @@
 package inc.evil.kafka.connect.http;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.apache.kafka.clients.producer.RecordMetadata;
 import org.apache.kafka.common.config.ConfigException;
 import org.apache.kafka.connect.data.Schema;
 import org.apache.kafka.connect.data.SchemaBuilder;
 import org.apache.kafka.connect.errors.ConnectException;
+import org.apache.kafka.connect.errors.DataException;
 import org.apache.kafka.connect.errors.RetriableException;
 import org.apache.kafka.connect.source.SourceRecord;
 import org.apache.kafka.connect.source.SourceTask;
+import org.apache.kafka.connect.source.TransactionContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import inc.evil.kafka.connect.http.config.HttpSourceConfig;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -32,6 +53,12 @@ public class HttpSourceTask extends SourceTask {
 
     private static final Logger log = LoggerFactory.getLogger(HttpSourceTask.class);
 
+    static final String LAST_POLLED_TIMESTAMP = "last_polled_timestamp";
+    static final String FILE_POSITION = "file_position";
+    static final String FILE_ETAG = "file_etag";
+    static final String FILE_IN_PROGRESS = "file_in_progress";
+    private static final long BACK_PRESSURE_WAIT_MS = 1000L;
+
     private String url;
     private String method;
     private long pollIntervalMs;
@@ -40,6 +67,26 @@ public class HttpSourceTask extends SourceTask {
     private Map<String, String> sourcePartition;
     private Map<String, Object> sourceOffset;
     private long lastPollTime = 0L;
+    private boolean fileMode;
+    private int fileChunkBytes;
+    private long filePosition = 0L;
+    private String fileEtag;
+    private boolean fileInProgress;
+    private long fileRangeLength;
+    private JsonRecordSplitter splitter;
+    private final Map<String, SnapshotDiffer> differs = new HashMap<>();
+    private final List<SnapshotDiffer> stagedSnapshots = new ArrayList<>();
+    private final List<String> stagedIds = new ArrayList<>();
+    private List<FetchTarget> targets = Collections.emptyList();
+    private boolean fanOut;
+    private ExecutorService fetchExecutor;
+    private Semaphore fetchPermits;
+    private DedupWindow dedupWindow;
+    private InFlightTracker inFlight = new InFlightTracker(0L, 0L);
+    private final CountDownLatch stopSignal = new CountDownLatch(1);
+    private PollSchedule schedule;
+    private TransactionContext transactionContext;
+    private OversizeHandler oversize;
 
     /**
      * Get the version of this task.
@@ -67,17 +114,87 @@ public class HttpSourceTask extends SourceTask {
             this.method = config.getString(HttpSourceConfig.HTTP_METHOD);
             this.pollIntervalMs = config.getInt(HttpSourceConfig.HTTP_POLL_INTERVAL_MS);
             this.topic = config.getString(HttpSourceConfig.TOPIC);
+            this.fileMode = HttpSourceConfig.MODE_FILE.equals(config.getString(HttpSourceConfig.HTTP_MODE));
+            this.fileChunkBytes = config.getInt(HttpSourceConfig.HTTP_FILE_CHUNK_BYTES);
+            this.fileRangeLength = this.fileChunkBytes;
+            List<String> endpoints = config.getList(HttpSourceConfig.HTTP_URLS);
+            if (this.fileMode && !endpoints.isEmpty()) {
+                throw new ConfigException(HttpSourceConfig.HTTP_URLS + " is not supported in file mode.");
+            }
+            List<IdBatch> batches = readBatches(config);
+            if (batches != null && (this.fileMode || !endpoints.isEmpty())) {
+                throw new ConfigException(HttpSourceConfig.HTTP_BATCH_IDS + " is not supported in file mode or with " + HttpSourceConfig.HTTP_URLS + ".");
+            }
+            this.fanOut = !endpoints.isEmpty() || batches != null;
+            this.targets = batches != null ? batchTargets(config, batches) : endpointTargets(endpoints);
+            if (config.getBoolean(HttpSourceConfig.HTTP_RECORDS_SPLIT)) {
+                this.splitter = new JsonRecordSplitter(
+                        config.getString(HttpSourceConfig.HTTP_RECORDS_POINTER),
+                        config.getString(HttpSourceConfig.HTTP_RECORDS_KEY_FIELD),
+                        config.getString(HttpSourceConfig.HTTP_DEDUP_ID_FIELD));
+            }
+            long dedupWindowMs = config.getLong(HttpSourceConfig.HTTP_DEDUP_WINDOW_MS);
+            if (dedupWindowMs > 0) {
+                if (this.splitter == null || !this.splitter.hasIdField()) {
+                    throw new ConfigException(HttpSourceConfig.HTTP_DEDUP_WINDOW_MS + " requires " + HttpSourceConfig.HTTP_RECORDS_SPLIT
+                            + " and " + HttpSourceConfig.HTTP_DEDUP_ID_FIELD + " or " + HttpSourceConfig.HTTP_RECORDS_KEY_FIELD + ".");
+                }
+                this.dedupWindow = new DedupWindow(dedupWindowMs, config.getLong(HttpSourceConfig.HTTP_DEDUP_MEMORY_BYTES));
+            }
+            if (config.getBoolean(HttpSourceConfig.HTTP_DIFF_ENABLED)) {
+                if (this.splitter == null || !this.splitter.hasKeyField()) {
+                    throw new ConfigException(HttpSourceConfig.HTTP_DIFF_ENABLED + " requires " + HttpSourceConfig.HTTP_RECORDS_SPLIT
+                            + " and " + HttpSourceConfig.HTTP_RECORDS_KEY_FIELD + ".");
+                }
+                String indexDir = config.getString(HttpSourceConfig.HTTP_DIFF_INDEX_DIR);
+                Path directory = indexDir.isEmpty() ? null : Paths.get(indexDir);
+                for (String name : polledNames()) {
+                    this.differs.put(name, new SnapshotDiffer(directory,
+                            "diff-" + Integer.toHexString(name.hashCode()) + "-" + System.identityHashCode(this)));
+                }
+            }
+            long oversizeThreshold = config.getLong(HttpSourceConfig.HTTP_OVERSIZE_THRESHOLD_BYTES);
+            if (oversizeThreshold > 0) {
+                String strategy = config.getString(HttpSourceConfig.HTTP_OVERSIZE_STRATEGY);
+                String claimCheckDir = config.getString(HttpSourceConfig.HTTP_CLAIM_CHECK_DIR);
+                if (HttpSourceConfig.OVERSIZE_CLAIM_CHECK.equals(strategy) && claimCheckDir.isEmpty()) {
+                    throw new ConfigException(HttpSourceConfig.OVERSIZE_CLAIM_CHECK + " requires " + HttpSourceConfig.HTTP_CLAIM_CHECK_DIR + ".");
+                }
+                this.oversize = new OversizeHandler(oversizeThreshold, strategy, claimCheckDir.isEmpty() ? null : Paths.get(claimCheckDir));
+            }
+            this.inFlight = new InFlightTracker(
+                    config.getLong(HttpSourceConfig.HTTP_INFLIGHT_MAX_RECORDS),
+                    config.getLong(HttpSourceConfig.HTTP_INFLIGHT_MAX_BYTES));
 
+            this.transactionContext = transactionContext();
             this.apiClient = new HttpApiClient(config);
+            prewarm();
 
-            this.sourcePartition = Collections.singletonMap("url", this.url);
+            this.sourcePartition = partitionOf(this.url);
+            this.schedule = new PollSchedule(
+                    this.pollIntervalMs,
+                    config.getBoolean(HttpSourceConfig.HTTP_POLL_STAGGER),
+                    config.getBoolean(HttpSourceConfig.HTTP_POLL_ALIGN),
+                    config.getLong(HttpSourceConfig.HTTP_POLL_JITTER_MS),
+                    (this.fanOut ? polledNames() : this.sourcePartition).toString(),
+                    System.currentTimeMillis());
+            if (this.fanOut) {
+                startTargets(config);
+                return;
+            }
             this.sourceOffset = context.offsetStorageReader().offset(this.sourcePartition);
             if (this.sourceOffset != null) {
                 log.info("Found persisted offset: {}", this.sourceOffset);
-                Long lastPolledTimestamp = (Long) this.sourceOffset.get("last_polled_timestamp");
+                Long lastPolledTimestamp = (Long) this.sourceOffset.get(LAST_POLLED_TIMESTAMP);
                 if (lastPolledTimestamp != null) {
                     this.lastPollTime = lastPolledTimestamp;
                 }
+                Long persistedFilePosition = (Long) this.sourceOffset.get(FILE_POSITION);
+                if (persistedFilePosition != null) {
+                    this.filePosition = persistedFilePosition;
+                    this.fileEtag = (String) this.sourceOffset.get(FILE_ETAG);
+                    this.fileInProgress = !Boolean.FALSE.equals(this.sourceOffset.get(FILE_IN_PROGRESS));
+                }
             } else {
                 log.info("No previous offset found. Starting from scratch.");
             }
@@ -87,14 +204,145 @@ public class HttpSourceTask extends SourceTask {
         }
     }
 
+    /**
+     * Pre-warms connections to every origin this task polls: the URL, or the origins of its targets when fanning out.
+     */
+    private void prewarm() {
+        if (!fanOut) {
+            apiClient.prewarm(url);
+            return;
+        }
+        Set<String> origins = new LinkedHashSet<>();
+        for (FetchTarget target : targets) {
+            origins.add(originOf(target.uri));
+        }
+        for (String origin : origins) {
+            apiClient.prewarm(origin);
+        }
+    }
+
+    private static String originOf(String uri) {
+        try {
+            URI parsed = new URI(uri);
+            return parsed.getScheme() == null || parsed.getRawAuthority() == null ? uri : parsed.getScheme() + "://" + parsed.getRawAuthority();
+        } catch (URISyntaxException e) {
+            return uri;
+        }
+    }
+
+    /**
+     * Reads the IDs to fetch in batches and keeps the batches assigned to this task.
+     *
+     * @return The assigned batches, or null if no IDs are configured.
+     */
+    private List<IdBatch> readBatches(HttpSourceConfig config) {
+        List<String> ids;
+        String file = config.getString(HttpSourceConfig.HTTP_BATCH_IDS_FILE);
+        try {
+            ids = IdBatch.readIds(config.getList(HttpSourceConfig.HTTP_BATCH_IDS), file);
+        } catch (IOException e) {
+            throw new ConnectException("Failed to read IDs from " + file + ".", e);
+        }
+        if (ids.isEmpty()) {
+            if (!file.isEmpty()) {
+                throw new ConfigException(HttpSourceConfig.HTTP_BATCH_IDS_FILE, file, "File lists no IDs.");
+            }
+            return null;
+        }
+        String body = config.getString(HttpSourceConfig.HTTP_REQUEST_BODY);
+        if (config.getString(HttpSourceConfig.HTTP_BATCH_PARAM).isEmpty()
+                && !body.contains(HttpSourceConfig.BATCH_IDS_PLACEHOLDER) && !body.contains(HttpSourceConfig.BATCH_IDS_JSON_PLACEHOLDER)) {
+            throw new ConfigException(HttpSourceConfig.HTTP_BATCH_IDS + " requires " + HttpSourceConfig.HTTP_BATCH_PARAM + " or "
+                    + HttpSourceConfig.BATCH_IDS_PLACEHOLDER + " in " + HttpSourceConfig.HTTP_REQUEST_BODY + ".");
+        }
+        int taskIndex = config.getInt(HttpSourceConfig.HTTP_BATCH_TASK_INDEX);
+        int taskCount = config.getInt(HttpSourceConfig.HTTP_BATCH_TASK_COUNT);
+        List<IdBatch> all = IdBatch.chunk(ids, config.getInt(HttpSourceConfig.HTTP_BATCH_SIZE));
+        List<IdBatch> assigned = new ArrayList<>();
+        for (int i = taskIndex; i < all.size(); i += taskCount) {
+            assigned.add(all.get(i));
+        }
+        log.info("Fetching {} of {} batches for {} IDs.", assigned.size(), all.size(), ids.size());
+        return assigned;
+    }
+
+    private List<FetchTarget> endpointTargets(List<String> endpoints) {
+        List<FetchTarget> endpointTargets = new ArrayList<>(endpoints.size());
+        for (String endpoint : endpoints) {
+            endpointTargets.add(new FetchTarget(endpoint, endpoint, null, partitionOf(endpoint)));
+        }
+        return endpointTargets;
+    }
+
+    private List<FetchTarget> batchTargets(HttpSourceConfig config, List<IdBatch> batches) {
+        String param = config.getString(HttpSourceConfig.HTTP_BATCH_PARAM);
+        String body = config.getString(HttpSourceConfig.HTTP_REQUEST_BODY);
+        List<FetchTarget> batchTargets = new ArrayList<>(batches.size());
+        for (IdBatch batch : batches) {
+            Map<String, String> partition = new HashMap<>();
+            partition.put("url", url);
+            partition.put("batch", batch.getKey());
+            batchTargets.add(new FetchTarget(url + "#" + batch.getKey(), batch.uri(url, param), batch.body(body), partition));
+        }
+        return batchTargets;
+    }
+
+    /**
+     * Prepares fetching several endpoints or ID batches concurrently, each as its own source partition. Each
+     * target is fetched once it was polled no later than the target polled longest ago, so a target without a
+     * stored offset is polled right away, while targets completed before a restart wait for their next turn.
+     */
+    private void startTargets(HttpSourceConfig config) {
+        List<Map<String, String>> partitions = new ArrayList<>(targets.size());
+        for (FetchTarget target : targets) {
+            partitions.add(target.partition);
+        }
+        Map<Map<String, String>, Map<String, Object>> offsets = context.offsetStorageReader().offsets(partitions);
+        for (FetchTarget target : targets) {
+            Map<String, Object> offset = offsets == null ? null : offsets.get(target.partition);
+            Object lastPolledTimestamp = offset == null ? null : offset.get(LAST_POLLED_TIMESTAMP);
+            target.lastPollTime = lastPolledTimestamp instanceof Long ? (Long) lastPolledTimestamp : 0L;
+        }
+        this.lastPollTime = oldestPollTime(0L);
+        int concurrency = config.getInt(HttpSourceConfig.HTTP_FETCH_CONCURRENCY);
+        this.fetchPermits = new Semaphore(concurrency);
+        this.fetchExecutor = FetchExecutors.newExecutor("http-fetch-" + Integer.toHexString(System.identityHashCode(this)));
+        log.info("Polling {} targets with up to {} concurrent requests on {} threads.",
+                targets.size(), concurrency, FetchExecutors.usesVirtualThreads() ? "virtual" : "platform");
+    }
+
+    private long oldestPollTime(long fallback) {
+        long oldest = Long.MAX_VALUE;
+        for (FetchTarget target : targets) {
+            oldest = Math.min(oldest, target.lastPollTime);
+        }
+        return targets.isEmpty() ? fallback : oldest;
+    }
+
     /**
      * Poll for new data from the HTTP endpoint.
      * <p>
      * This method is called repeatedly by the Kafka Connect framework. It checks if
-     * the poll interval has passed. If not, it waits. If it has, it executes the
+     * the next poll is due, see {@link PollSchedule}. If not, it waits. If it has, it executes the
      * HTTP request, creates a {@link SourceRecord} from the response, and returns
      * it. The method handles various exceptions that may occur during the request.
      * </p>
+     * <p>
+     * In file mode, the file is read in consecutive ranges without waiting, one record per line,
+     * until its end is reached. Only then the poll interval applies before checking it for new data.
+     * </p>
+     * <p>
+     * With several endpoints or ID batches configured, those that are due are fetched concurrently. One failing
+     * with an I/O error, an error status or an invalid response is skipped until the next poll, unless every one failed.
+     * </p>
+     * <p>
+     * When the connector defines transaction boundaries, a transaction is committed after the records of
+     * each response, so that each page or batch is written exactly once together with its offset.
+     * </p>
+     * <p>
+     * While more records or bytes than configured are waiting for acknowledgement by Kafka, no request is made
+     * and an empty list is returned once the wait for acknowledgements times out.
+     * </p>
      *
      * @return A list of {@link SourceRecord} objects to be sent to Kafka, or an empty list if no
      * new data is available.
@@ -105,55 +353,433 @@ public class HttpSourceTask extends SourceTask {
     @Override
     public List<SourceRecord> poll() throws InterruptedException {
         long currentTime = System.currentTimeMillis();
-        if (currentTime - lastPollTime < pollIntervalMs) {
-            long waitTime = pollIntervalMs - (currentTime - lastPollTime);
+        if (isStopping()) {
+            return Collections.emptyList();
+        }
+        long nextPollTime = schedule.nextPollTime(lastPollTime);
+        if (!fileInProgress && currentTime < nextPollTime) {
+            long waitTime = nextPollTime - currentTime;
             log.info("Waiting for {} ms before next poll.", waitTime);
-            Thread.sleep(waitTime);
+            stopSignal.await(waitTime, TimeUnit.MILLISECONDS);
+            return Collections.emptyList();
+        }
+
+        if (!inFlight.awaitCapacity(BACK_PRESSURE_WAIT_MS)) {
+            log.debug("Pausing fetches with {} records ({} bytes) awaiting acknowledgement.", inFlight.getRecords(), inFlight.getBytes());
             return Collections.emptyList();
         }
 
         try {
 
-            String payload = this.apiClient.executeRequest(url, method);
-            SourceRecord record = getSourceRecord(payload, currentTime);
-            log.debug("Publishing fetched data={}", record);
-            this.lastPollTime = currentTime;
+            List<SourceRecord> records;
+            if (fileMode) {
+                records = pollFile(currentTime);
+                commitTransaction(records);
+            } else if (fanOut) {
+                records = pollTargets(currentTime);
+            } else {
+                String payload = this.apiClient.executeRequest(url, method);
+                records = toRecords(url, sourcePartition, payload, currentTime, lastPollTime);
+                commitTransaction(records);
+                this.lastPollTime = currentTime;
+            }
+            commitStaged(currentTime);
+            inFlight.add(records);
 
-            return Collections.singletonList(record);
+            return records;
 
         } catch (ConnectException e) {
             log.error("API client reported an unrecoverable error.", e);
             throw e;
         } catch (IOException e) {
+            if (isStopping()) {
+                log.debug("HTTP request was cancelled because the task is stopping.", e);
+                return Collections.emptyList();
+            }
             log.warn("An I/O error occurred during the HTTP request. This is likely temporary.", e);
             throw new RetriableException("I/O error during HTTP request.", e);
         } catch (Exception e) {
+            if (isStopping()) {
+                log.debug("HTTP request failed because the task is stopping.", e);
+                return Collections.emptyList();
+            }
             log.error("An unexpected error occurred during the HTTP request.", e);
             throw new ConnectException("Unexpected error.", e);
+        } finally {
+            discardStaged();
+            this.apiClient.releaseReservedMemory();
+        }
+    }
+
+    /**
+     * Makes the snapshots finished during this poll the basis of the next comparison and records the IDs it
+     * published in the deduplication window, once its records are handed off.
+     */
+    private void commitStaged(long currentTime) throws IOException {
+        for (SnapshotDiffer differ : stagedSnapshots) {
+            differ.commit();
+        }
+        stagedSnapshots.clear();
+        for (String id : stagedIds) {
+            dedupWindow.markIfAbsent(id, currentTime);
+        }
+        stagedIds.clear();
+    }
+
+    /**
+     * Discards the snapshots and IDs of a poll that failed after they were staged, so that their records are published by the next poll.
+     */
+    private void discardStaged() {
+        discardStaged(0, 0);
+    }
+
+    /**
+     * Discards what was staged after the given number of snapshots and IDs, for a target whose records are dropped.
+     */
+    private void discardStaged(int snapshotCount, int idCount) {
+        stagedIds.subList(idCount, stagedIds.size()).clear();
+        List<SnapshotDiffer> discarded = stagedSnapshots.subList(snapshotCount, stagedSnapshots.size());
+        for (SnapshotDiffer differ : discarded) {
+            try {
+                differ.abort();
+            } catch (IOException e) {
+                log.warn("Failed to discard an unpublished snapshot.", e);
+            }
+        }
+        discarded.clear();
+    }
+
+    /**
+     * Fetches the due targets concurrently, with at most {@code http.fetch.concurrency} requests in flight,
+     * and converts the responses into records in the polling thread. Every fetched target counts as polled,
+     * so that a failing one is retried at the next poll rather than immediately.
+     */
+    private List<SourceRecord> pollTargets(long currentTime) throws IOException {
+        List<FetchTarget> due = new ArrayList<>();
+        for (FetchTarget target : targets) {
+            if (target.lastPollTime <= lastPollTime) {
+                due.add(target);
+            }
+        }
+        List<Future<String>> fetches = new ArrayList<>(due.size());
+        List<SourceRecord> records = new ArrayList<>();
+        List<SourceRecord> boundaries = new ArrayList<>();
+        Exception lastError = null;
+        int failed = 0;
+        try {
+            for (FetchTarget target : due) {
+                fetchPermits.acquire();
+                try {
+                    fetches.add(fetchExecutor.submit(() -> {
+                        try {
+                            return target.body != null
+                                    ? apiClient.executeRequest(target.uri, method, target.body)
+                                    : apiClient.executeRequest(target.uri, method);
+                        } finally {
+                            fetchPermits.release();
+                        }
+                    }));
+                } catch (RejectedExecutionException e) {
+                    fetchPermits.release();
+                    throw new InterruptedIOException("Fetch executor was shut down.");
+                }
+            }
+            for (int i = 0; i < fetches.size(); i++) {
+                FetchTarget target = due.get(i);
+                long previousPollTime = target.lastPollTime;
+                target.lastPollTime = currentTime;
+                int stagedSnapshotCount = stagedSnapshots.size();
+                int stagedIdCount = stagedIds.size();
+                try {
+                    List<SourceRecord> response = toRecords(target.name, target.partition, fetch(fetches.get(i), target), currentTime, previousPollTime);
+                    if (transactionContext != null && !response.isEmpty()) {
+                        boundaries.add(response.get(response.size() - 1));
+                    }
+                    records.addAll(response);
+                } catch (IOException | ConnectException e) {
+                    if (isStopping()) {
+                        throw e;
+                    }
+                    log.warn("Fetching {} failed. Skipping it until the next poll.", target.name, e);
+                    discardStaged(stagedSnapshotCount, stagedIdCount);
+                    lastError = e;
+                    failed++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching endpoints.");
+        } finally {
+            for (Future<String> fetch : fetches) {
+                fetch.cancel(true);
+            }
+        }
+        this.lastPollTime = oldestPollTime(currentTime);
+        if (failed > 0 && failed == due.size()) {
+            if (lastError instanceof IOException) {
+                throw (IOException) lastError;
+            }
+            throw (ConnectException) lastError;
         }
+        for (SourceRecord boundary : boundaries) {
+            transactionContext.commitTransaction(boundary);
+        }
+        return records;
     }
 
-    private SourceRecord getSourceRecord(String payload, long currentTime) {
+    /**
+     * @return The response of a target, with the failure of its request unwrapped.
+     */
+    private static String fetch(Future<String> fetch, FetchTarget target) throws IOException, InterruptedException {
+        try {
+            return fetch.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new ConnectException("Fetching " + target.name + " failed.", cause);
+        }
+    }
+
+    /**
+     * Converts a response into records: one per element of the records array when splitting, otherwise one for the whole payload.
+     * Oversized values are then chunked or claim-checked.
+     *
+     * @param name             The name of the polled target, which selects its snapshot in diff mode.
+     * @param previousPollTime The time the target was polled before, from which a task restarted midway through the response resumes.
+     */
+    private List<SourceRecord> toRecords(String name, Map<String, String> partition, String payload, long currentTime, long previousPollTime)
+            throws IOException {
+        Map<String, Long> resumeOffset = Collections.singletonMap(LAST_POLLED_TIMESTAMP, previousPollTime);
+        if (splitter != null) {
+            return limitSize(splitRecords(name, partition, payload, currentTime), resumeOffset);
+        }
         log.info("Successfully fetched data. Payload size: {}", payload.length());
+        SourceRecord record = getSourceRecord(partition, Instant.now().toString(), Schema.STRING_SCHEMA, payload,
+                Collections.singletonMap(LAST_POLLED_TIMESTAMP, currentTime));
+        log.debug("Publishing fetched data={}", record);
+        return limitSize(Collections.singletonList(record), resumeOffset);
+    }
+
+    /**
+     * @param resumeOffset The offset the task resumes from before the first record, carried by the leading chunks of an oversized first value.
+     */
+    private List<SourceRecord> limitSize(List<SourceRecord> records, Map<String, ?> resumeOffset) throws IOException {
+        if (oversize == null) {
+            return records;
+        }
+        List<SourceRecord> limited = oversize.apply(records, resumeOffset);
+        if (limited != records) {
+            log.info("Replaced oversized values: publishing {} records instead of {}.", limited.size(), records.size());
+        }
+        return limited;
+    }
+
+    /**
+     * @return The transaction context when the connector defines transaction boundaries, or null otherwise,
+     * including on workers older than Kafka 3.3, which lack the method.
+     */
+    private TransactionContext transactionContext() {
+        try {
+            return context.transactionContext();
+        } catch (NoSuchMethodError | NoClassDefFoundError e) {
+            log.debug("Worker does not support connector-defined transactions.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Ends a transaction after the records of one response when the connector defines transaction boundaries,
+     * so that each page or batch is written exactly once together with its offset.
+     */
+    private void commitTransaction(List<SourceRecord> records) {
+        if (transactionContext != null && !records.isEmpty()) {
+            transactionContext.commitTransaction(records.get(records.size() - 1));
+        }
+    }
+
+    private Map<String, String> partitionOf(String endpoint) {
+        return endpoint.equals(url) && sourcePartition != null ? sourcePartition : Collections.singletonMap("url", endpoint);
+    }
+
+    private List<String> polledNames() {
+        if (!fanOut) {
+            return Collections.singletonList(url);
+        }
+        List<String> names = new ArrayList<>(targets.size());
+        for (FetchTarget target : targets) {
+            names.add(target.name);
+        }
+        return names;
+    }
+
+    /**
+     * Reads the next range of the file and turns each complete line into a record whose offset
+     * holds the byte position right after it, so that a restarted task resumes after the last committed line.
+     * <p>
+     * While a pass through the file is in progress, ranges are conditional on its entity tag, so that a file
+     * replaced midway is read again from the start. Once the end was reached, the check for appended data is
+     * unconditional, because appending changes the entity tag. It starts one byte early instead: the file only
+     * counts as appended to if that byte still ends a line, and as replaced if it does not or if the file is now
+     * shorter than the position. Whether the end was reached is stored in the offset, so a restarted task
+     * checks for appended data the same way.
+     * </p>
+     */
+    private List<SourceRecord> pollFile(long currentTime) throws IOException, URISyntaxException {
+        boolean appending = !fileInProgress && filePosition > 0;
+        FileChunk chunk = appending
+                ? this.apiClient.executeRangeRequest(url, filePosition - 1, fileRangeLength + 1, null)
+                : this.apiClient.executeRangeRequest(url, filePosition, fileRangeLength, fileInProgress ? fileEtag : null);
+        if (chunk.isReplaced() || appending && !chunk.startsWithLineFeed()) {
+            log.warn("File at {} was replaced. Reading it again from the start.", url);
+            this.filePosition = 0L;
+            this.fileEtag = null;
+            this.fileInProgress = true;
+            return Collections.emptyList();
+        }
+
+        List<SourceRecord> records = new ArrayList<>(chunk.getLines().size());
+        for (int i = 0; i < chunk.getLines().size(); i++) {
+            long nextPosition = chunk.getNextPosition(i);
+            boolean inProgress = !chunk.isEndOfFile() || nextPosition < chunk.getEndPosition();
+            records.add(getSourceRecord(chunk.getLines().get(i), fileOffset(currentTime, nextPosition, chunk.getEtag(), inProgress)));
+        }
+        records = limitSize(records, fileOffset(lastPollTime, filePosition, fileEtag, fileInProgress));
+
+        if (chunk.getEndPosition() == filePosition && !chunk.isEndOfFile() && chunk.getLines().isEmpty()) {
+            this.fileRangeLength = Math.min(fileRangeLength * 2, Integer.MAX_VALUE);
+            log.warn("No complete line within {} bytes at position {}. Widening the range to {} bytes.", fileRangeLength / 2, filePosition, fileRangeLength);
+        } else {
+            this.fileRangeLength = fileChunkBytes;
+        }
+        this.filePosition = chunk.getEndPosition();
+        this.fileEtag = chunk.getEtag();
+        this.fileInProgress = !chunk.isEndOfFile();
+        if (!fileInProgress) {
+            log.info("Reached the end of {} at byte {}.", url, filePosition);
+            this.lastPollTime = currentTime;
+        }
+        return records;
+    }
+
+    private static Map<String, Object> fileOffset(long pollTime, long position, String etag, boolean inProgress) {
+        Map<String, Object> offset = new HashMap<>();
+        offset.put(LAST_POLLED_TIMESTAMP, pollTime);
+        offset.put(FILE_POSITION, position);
+        offset.put(FILE_IN_PROGRESS, inProgress);
+        if (etag != null) {
+            offset.put(FILE_ETAG, etag);
+        }
+        return offset;
+    }
+
+    /**
+     * Publishes each element of the records array as its own record. In diff mode only new or changed
+     * elements are published, followed by a tombstone for every key missing from this snapshot, which is
+     * staged until {@link #poll()} hands its records off.
+     * With a deduplication window, elements whose ID was already published for the same target within the window are dropped;
+     * the IDs of this response are staged until {@link #poll()} hands its records off.
+     */
+    private List<SourceRecord> splitRecords(String name, Map<String, String> partition, String payload, long currentTime) throws IOException {
+        SnapshotDiffer differ = differs.get(name);
+        String dedupScope = fanOut ? name + '\n' : "";
+        Map<String, Long> offset = Collections.singletonMap(LAST_POLLED_TIMESTAMP, currentTime);
+        Schema valueSchema = differ != null ? Schema.OPTIONAL_STRING_SCHEMA : Schema.STRING_SCHEMA;
+        List<SourceRecord> records = new ArrayList<>();
+        Set<String> ids = new HashSet<>();
+        int[] elements = {0};
+        if (differ != null) {
+            differ.begin();
+        }
+        try {
+            splitter.forEach(payload, (element, json) -> {
+                elements[0]++;
+                String key = splitter.keyOf(element);
+                if (differ != null) {
+                    if (key == null) {
+                        log.warn("Skipping record without key field: {}", json);
+                        return;
+                    }
+                    if (!differ.offer(key, json)) {
+                        return;
+                    }
+                }
+                if (dedupWindow != null) {
+                    String id = splitter.idOf(element);
+                    if (id != null && (dedupWindow.contains(dedupScope + id, currentTime) || !ids.add(dedupScope + id))) {
+                        return;
+                    }
+                }
+                records.add(getSourceRecord(partition, key != null ? key : Instant.now().toString(), valueSchema, json, offset));
+            });
+            if (differ != null) {
+                for (String deletedKey : differ.finish()) {
+                    records.add(getSourceRecord(partition, deletedKey, valueSchema, null, offset));
+                }
+                stagedSnapshots.add(differ);
+            }
+            stagedIds.addAll(ids);
+        } catch (JsonProcessingException e) {
+            abortSnapshot(differ);
+            throw new DataException("Response is not valid JSON.", e);
+        } catch (IOException | RuntimeException e) {
+            abortSnapshot(differ);
+            throw e;
+        }
+        log.info("Successfully fetched {} records. Publishing {} records.", elements[0], records.size());
+        return records;
+    }
+
+    private static void abortSnapshot(SnapshotDiffer differ) throws IOException {
+        if (differ != null) {
+            differ.abort();
+        }
+    }
+
+    private SourceRecord getSourceRecord(String payload, Map<String, ?> offset) {
+        return getSourceRecord(this.sourcePartition, Instant.now().toString(), Schema.STRING_SCHEMA, payload, offset);
+    }
+
+    private SourceRecord getSourceRecord(Map<String, String> partition, String key, Schema valueSchema, String value, Map<String, ?> offset) {
         return new SourceRecord(
-                this.sourcePartition,
-                Collections.singletonMap("last_polled_timestamp", currentTime),
+                partition,
+                offset,
                 this.topic,
                 Schema.STRING_SCHEMA,
-                Instant.now().toString(),
-                Schema.STRING_SCHEMA,
-                payload
+                key,
+                valueSchema,
+                value
         );
     }
 
+    /**
+     * Releases an acknowledged or filtered record from the in-flight accounting, which resumes fetching
+     * once the in-flight records and bytes drop below their high-water marks.
+     *
+     * @param record   The record that was handled by the producer.
+     * @param metadata The metadata of the written record, or null if the record was filtered out.
+     */
+    @Override
+    public void commitRecord(SourceRecord record, RecordMetadata metadata) {
+        inFlight.release(record);
+    }
+
     /**
      * Stop the task. This method is called by the Kafka Connect framework when
      * the task is being stopped. It is used to clean up any resources, such as
      * closing the HTTP client.
+     * <p>
+     * It may be called while another thread is inside {@link #poll()}: waiting for the next poll,
+     * for acknowledgements or for the memory budget ends immediately and requests in flight are cancelled,
+     * so that the task shuts down within milliseconds rather than after the poll interval plus the read timeout.
+     * </p>
      */
     @Override
     public void stop() {
         log.info("Stopping HttpSourceTask");
+        stopSignal.countDown();
+        inFlight.cancel();
         if (this.apiClient != null) {
             try {
                 this.apiClient.close();
@@ -161,9 +787,23 @@ public class HttpSourceTask extends SourceTask {
                 log.error("Failed to close HTTP client.", e);
             }
         }
+        if (this.fetchExecutor != null) {
+            this.fetchExecutor.shutdownNow();
+        }
+        for (SnapshotDiffer differ : this.differs.values()) {
+            try {
+                differ.close();
+            } catch (IOException e) {
+                log.error("Failed to release snapshot index.", e);
+            }
+        }
     }
 
 
+    private boolean isStopping() {
+        return stopSignal.getCount() == 0;
+    }
+
     /**
      * Get the last successful poll time. This method is primarily for testing.
      *
@@ -190,5 +830,22 @@ public class HttpSourceTask extends SourceTask {
     void setApiClient(HttpApiClient apiClient) {
         this.apiClient = apiClient;
     }
-}
 
+    /**
+     * An endpoint or ID batch fetched concurrently with others, each with its own source partition.
+     */
+    private static final class FetchTarget {
+        private final String name;
+        private final String uri;
+        private final String body;
+        private final Map<String, String> partition;
+        private long lastPollTime;
+
+        private FetchTarget(String name, String uri, String body, Map<String, String> partition) {
+            this.name = name;
+            this.uri = uri;
+            this.body = body;
+            this.partition = partition;
+        }
+    }
+}
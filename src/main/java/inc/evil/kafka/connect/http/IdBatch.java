@@ -0,0 +1,125 @@
+package inc.evil.kafka.connect.http;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import inc.evil.kafka.connect.http.config.HttpSourceConfig;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A chunk of IDs fetched with a single request, either as a comma-separated query parameter or substituted
+ * into the request body.
+ * <p>
+ * A batch is identified by a hash of its IDs, so that its stored offset still applies after a restart and
+ * a changed ID list starts the affected batches afresh.
+ * </p>
+ */
+final class IdBatch {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final List<String> ids;
+    private final String key;
+
+    IdBatch(List<String> ids) {
+        this.ids = Collections.unmodifiableList(new ArrayList<>(ids));
+        this.key = Long.toHexString(FingerprintIndex.hash(String.join(",", ids)));
+    }
+
+    /**
+     * Reads the configured IDs followed by those in the file, dropping blank lines, comments and duplicates.
+     *
+     * @param configured The IDs from the configuration.
+     * @param file       The path of a file with one ID per line, or empty for none.
+     * @return The IDs in their original order.
+     * @throws IOException If the file cannot be read.
+     */
+    static List<String> readIds(List<String> configured, String file) throws IOException {
+        Set<String> ids = new LinkedHashSet<>(configured);
+        if (!file.isEmpty()) {
+            for (String line : Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8)) {
+                String id = line.trim();
+                if (!id.isEmpty() && !id.startsWith("#")) {
+                    ids.add(id);
+                }
+            }
+        }
+        return new ArrayList<>(ids);
+    }
+
+    /**
+     * @param ids  The IDs.
+     * @param size The maximum number of IDs per batch.
+     * @return Consecutive batches of at most {@code size} IDs.
+     */
+    static List<IdBatch> chunk(List<String> ids, int size) {
+        List<IdBatch> batches = new ArrayList<>((ids.size() + size - 1) / size);
+        for (int from = 0; from < ids.size(); from += size) {
+            batches.add(new IdBatch(ids.subList(from, Math.min(ids.size(), from + size))));
+        }
+        return batches;
+    }
+
+    List<String> getIds() {
+        return ids;
+    }
+
+    /**
+     * @return The batch identifier stored in its source partition.
+     */
+    String getKey() {
+        return key;
+    }
+
+    /**
+     * @param baseUri The base URI.
+     * @param param   The query parameter carrying the IDs, or empty for none.
+     * @return The URI with the IDs appended as a query parameter.
+     */
+    String uri(String baseUri, String param) {
+        if (param.isEmpty()) {
+            return baseUri;
+        }
+        StringBuilder sb = new StringBuilder(baseUri).append(baseUri.contains("?") ? '&' : '?')
+                .append(encode(param)).append('=');
+        for (int i = 0; i < ids.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(encode(ids.get(i)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param template The request body with placeholders for the IDs.
+     * @return The request body for this batch, or null if there is no template.
+     */
+    String body(String template) {
+        if (template == null || template.isEmpty()) {
+            return null;
+        }
+        String body = template.replace(HttpSourceConfig.BATCH_IDS_PLACEHOLDER, String.join(",", ids));
+        if (body.contains(HttpSourceConfig.BATCH_IDS_JSON_PLACEHOLDER)) {
+            try {
+                body = body.replace(HttpSourceConfig.BATCH_IDS_JSON_PLACEHOLDER, MAPPER.writeValueAsString(ids));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Cannot serialize IDs.", e);
+            }
+        }
+        return body;
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
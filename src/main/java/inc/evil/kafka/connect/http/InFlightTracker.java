@@ -0,0 +1,131 @@
+package inc.evil.kafka.connect.http;
+
+import org.apache.kafka.connect.source.SourceRecord;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Counts the records and bytes handed to Kafka Connect that the producer has not acknowledged yet,
+ * so that fetching can pause while the producer is backed up.
+ * <p>
+ * Records are added when {@code poll()} returns them and released from {@code commitRecord()},
+ * which the framework calls once per record after it was acknowledged or filtered out.
+ * </p>
+ */
+final class InFlightTracker {
+
+    private final long maxRecords;
+    private final long maxBytes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private long records;
+    private long bytes;
+    private boolean cancelled;
+
+    /**
+     * @param maxRecords The high-water mark for unacknowledged records; 0 for no limit.
+     * @param maxBytes   The high-water mark for unacknowledged bytes; 0 for no limit.
+     */
+    InFlightTracker(long maxRecords, long maxBytes) {
+        this.maxRecords = maxRecords;
+        this.maxBytes = maxBytes;
+    }
+
+    void add(List<SourceRecord> polled) {
+        long polledBytes = 0L;
+        for (SourceRecord record : polled) {
+            polledBytes += sizeOf(record);
+        }
+        lock.lock();
+        try {
+            records += polled.size();
+            bytes += polledBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void release(SourceRecord record) {
+        long size = sizeOf(record);
+        lock.lock();
+        try {
+            records = Math.max(0L, records - 1);
+            bytes = Math.max(0L, bytes - size);
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the in-flight records and bytes are below their high-water marks.
+     *
+     * @param timeoutMs The maximum time to wait.
+     * @return Whether there is capacity to fetch more; false once {@link #cancel()} was called.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    boolean awaitCapacity(long timeoutMs) throws InterruptedException {
+        long remainingNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        lock.lock();
+        try {
+            while (saturated()) {
+                if (remainingNanos <= 0L || cancelled) {
+                    return false;
+                }
+                remainingNanos = released.awaitNanos(remainingNanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ends the current wait for capacity, if any, so that a stopping task does not linger in it.
+     */
+    void cancel() {
+        lock.lock();
+        try {
+            cancelled = true;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getRecords() {
+        lock.lock();
+        try {
+            return records;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getBytes() {
+        lock.lock();
+        try {
+            return bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean saturated() {
+        return (maxRecords > 0 && records >= maxRecords) || (maxBytes > 0 && bytes >= maxBytes);
+    }
+
+    /**
+     * @return The approximate size of the record key and value; both are strings in this connector.
+     */
+    static long sizeOf(SourceRecord record) {
+        return length(record.key()) + length(record.value());
+    }
+
+    private static long length(Object value) {
+        return value instanceof String ? ((String) value).length() : 0L;
+    }
+}
@@ -0,0 +1,168 @@
+package inc.evil.kafka.connect.http;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.connect.errors.ConnectException;
+
+import java.io.IOException;
+
+/**
+ * Splits a JSON response into the elements of one of its arrays.
+ * <p>
+ * The array is located with a JSON Pointer (RFC 6901) and its elements are parsed one at a time
+ * while streaming, so only a single element is materialized as a tree at any moment.
+ * </p>
+ */
+class JsonRecordSplitter {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final JsonFactory FACTORY = MAPPER.getFactory();
+
+    private final String[] segments;
+    private final JsonPointer keyPointer;
+    private final JsonPointer idPointer;
+
+    /**
+     * @param recordsPointer The JSON Pointer to the array of records; empty for a top-level array.
+     * @param keyField       The field of each element holding its key, either a field name or a JSON Pointer; may be empty.
+     */
+    JsonRecordSplitter(String recordsPointer, String keyField) {
+        this(recordsPointer, keyField, "");
+    }
+
+    /**
+     * @param recordsPointer The JSON Pointer to the array of records; empty for a top-level array.
+     * @param keyField       The field of each element holding its key, either a field name or a JSON Pointer; may be empty.
+     * @param idField        The field of each element holding its ID, like {@code keyField}; empty to use the key field.
+     */
+    JsonRecordSplitter(String recordsPointer, String keyField, String idField) {
+        this.segments = recordsPointer == null || recordsPointer.isEmpty() || recordsPointer.equals("/")
+                ? new String[0]
+                : recordsPointer.substring(recordsPointer.startsWith("/") ? 1 : 0).split("/", -1);
+        this.keyPointer = fieldPointer(keyField);
+        this.idPointer = idField == null || idField.isEmpty() ? keyPointer : fieldPointer(idField);
+    }
+
+    private static JsonPointer fieldPointer(String field) {
+        return field == null || field.isEmpty()
+                ? null
+                : JsonPointer.compile(field.startsWith("/") ? field : "/" + field.replace("~", "~0").replace("/", "~1"));
+    }
+
+    /**
+     * Passes every element of the records array to the consumer.
+     *
+     * @param payload  The JSON response.
+     * @param consumer Receives each element.
+     * @throws IOException If the response is not valid JSON.
+     */
+    void forEach(String payload, ElementConsumer consumer) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(payload)) {
+            if (!seek(parser)) {
+                throw new ConnectException("Response does not contain an array at the configured records pointer.");
+            }
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                JsonNode element = MAPPER.readTree(parser);
+                consumer.accept(element, MAPPER.writeValueAsString(element));
+            }
+        }
+    }
+
+    /**
+     * @param element A record element.
+     * @return The text of its key field, or null if no key field is configured or the element has none.
+     */
+    String keyOf(JsonNode element) {
+        return textAt(element, keyPointer);
+    }
+
+    /**
+     * @param element A record element.
+     * @return The text of its ID field, or null if no ID field is configured or the element has none.
+     */
+    String idOf(JsonNode element) {
+        return textAt(element, idPointer);
+    }
+
+    boolean hasKeyField() {
+        return keyPointer != null;
+    }
+
+    boolean hasIdField() {
+        return idPointer != null;
+    }
+
+    private static String textAt(JsonNode element, JsonPointer pointer) {
+        if (pointer == null) {
+            return null;
+        }
+        JsonNode value = element.at(pointer);
+        if (value.isMissingNode() || value.isNull()) {
+            return null;
+        }
+        return value.isValueNode() ? value.asText() : value.toString();
+    }
+
+    private boolean seek(JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        for (String rawSegment : segments) {
+            String segment = rawSegment.replace("~1", "/").replace("~0", "~");
+            if (token == JsonToken.START_OBJECT) {
+                token = seekField(parser, segment);
+            } else if (token == JsonToken.START_ARRAY) {
+                token = seekIndex(parser, segment);
+            } else {
+                return false;
+            }
+            if (token == null) {
+                return false;
+            }
+        }
+        return token == JsonToken.START_ARRAY;
+    }
+
+    private static JsonToken seekField(JsonParser parser, String name) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (field.equals(name)) {
+                return value;
+            }
+            parser.skipChildren();
+        }
+        return null;
+    }
+
+    private static JsonToken seekIndex(JsonParser parser, String segment) throws IOException {
+        int index;
+        try {
+            index = Integer.parseInt(segment);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        JsonToken token;
+        for (int i = 0; (token = parser.nextToken()) != JsonToken.END_ARRAY && token != null; i++) {
+            if (i == index) {
+                return token;
+            }
+            parser.skipChildren();
+        }
+        return null;
+    }
+
+    /**
+     * Receives the elements of the records array.
+     */
+    @FunctionalInterface
+    interface ElementConsumer {
+        /**
+         * @param element The parsed element.
+         * @param json    The element serialized as compact JSON.
+         */
+        void accept(JsonNode element, String json) throws IOException;
+    }
+}
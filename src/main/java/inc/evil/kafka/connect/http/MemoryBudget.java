@@ -0,0 +1,208 @@
+package inc.evil.kafka.connect.http;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A JVM-wide byte budget for response payloads held by all tasks of a worker.
+ * <p>
+ * Before a response body is read, bytes are reserved against the budget, up front from its
+ * {@code Content-Length} when known and otherwise in steps while streaming. A reservation that does not
+ * fit waits until other tasks release theirs, so a burst of large responses slows tasks down instead of
+ * exhausting the heap. A single reservation larger than the whole budget is granted once nothing else is reserved.
+ * </p>
+ */
+final class MemoryBudget {
+
+    private static final MemoryBudget INSTANCE = new MemoryBudget();
+    private static final long STEP_BYTES = 64 * 1024;
+
+    private long limitBytes;
+    private long reservedBytes;
+
+    static MemoryBudget getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param limitBytes The budget in bytes; 0 for no limit. The value configured last applies worker-wide.
+     */
+    synchronized void setLimit(long limitBytes) {
+        this.limitBytes = limitBytes;
+        notifyAll();
+    }
+
+    synchronized long getReserved() {
+        return reservedBytes;
+    }
+
+    /**
+     * @param timeoutMs How long a reservation may wait for the budget before failing.
+     * @return A new, empty reservation.
+     */
+    Reservation newReservation(long timeoutMs) {
+        return new Reservation(timeoutMs);
+    }
+
+    private synchronized void acquire(Reservation reservation, long bytes, long timeoutMs) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        try {
+            while (limitBytes > 0 && reservedBytes > 0 && reservedBytes + bytes > limitBytes) {
+                if (reservation.isCancelled()) {
+                    throw new InterruptedIOException("Reservation was cancelled while waiting for the worker memory budget.");
+                }
+                long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMs <= 0) {
+                    throw new IOException("Timed out after " + timeoutMs + " ms waiting for " + bytes
+                            + " bytes of the worker memory budget (" + reservedBytes + " of " + limitBytes + " bytes reserved).");
+                }
+                wait(remainingMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the worker memory budget.");
+        }
+        reservedBytes += bytes;
+    }
+
+    private synchronized void release(long bytes) {
+        if (bytes > 0) {
+            reservedBytes = Math.max(0L, reservedBytes - bytes);
+            notifyAll();
+        }
+    }
+
+    private synchronized void wakeUp() {
+        notifyAll();
+    }
+
+    /**
+     * Bytes reserved by one holder, released together.
+     */
+    final class Reservation {
+        private final long timeoutMs;
+        private final Reservation parent;
+        private final AtomicLong held = new AtomicLong();
+        private volatile boolean cancelled;
+
+        private Reservation(long timeoutMs) {
+            this(timeoutMs, null);
+        }
+
+        private Reservation(long timeoutMs, Reservation parent) {
+            this.timeoutMs = timeoutMs;
+            this.parent = parent;
+        }
+
+        /**
+         * Reserves bytes, waiting for other holders to release theirs if the budget is exhausted.
+         *
+         * @param bytes The number of bytes.
+         * @throws IOException If the bytes could not be reserved in time.
+         */
+        void reserve(long bytes) throws IOException {
+            if (bytes > 0) {
+                acquire(this, bytes, timeoutMs);
+                held.addAndGet(bytes);
+            }
+        }
+
+        /**
+         * @return A new, empty reservation with the same timeout, which is cancelled together with this one.
+         */
+        Reservation child() {
+            return new Reservation(timeoutMs, this);
+        }
+
+        /**
+         * Makes current and future waits for the budget by this reservation and its children fail immediately.
+         */
+        void cancel() {
+            cancelled = true;
+            wakeUp();
+        }
+
+        private boolean isCancelled() {
+            return cancelled || (parent != null && parent.isCancelled());
+        }
+
+        /**
+         * Hands all bytes held by this reservation over to another one.
+         */
+        void moveTo(Reservation target) {
+            target.held.addAndGet(held.getAndSet(0L));
+        }
+
+        /**
+         * Returns all bytes held by this reservation to the budget.
+         */
+        void release() {
+            MemoryBudget.this.release(held.getAndSet(0L));
+        }
+
+        long getHeld() {
+            return held.get();
+        }
+
+        /**
+         * Wraps a stream so that every byte read through it is reserved first.
+         *
+         * @param in             The stream to read.
+         * @param expectedLength The expected number of bytes, reserved at once; -1 if unknown.
+         * @return The wrapping stream.
+         * @throws IOException If the expected length could not be reserved in time.
+         */
+        InputStream track(InputStream in, long expectedLength) throws IOException {
+            reserve(Math.max(0L, expectedLength));
+            return new ReservingInputStream(in, Math.max(0L, expectedLength));
+        }
+
+        private final class ReservingInputStream extends FilterInputStream {
+            private long granted;
+            private long read;
+
+            private ReservingInputStream(InputStream in, long granted) {
+                super(in);
+                this.granted = granted;
+            }
+
+            @Override
+            public int read() throws IOException {
+                ensure(1);
+                int b = super.read();
+                if (b >= 0) {
+                    read++;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                ensure(len);
+                int n = super.read(b, off, len);
+                if (n > 0) {
+                    read += n;
+                }
+                return n;
+            }
+
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+
+            private void ensure(int len) throws IOException {
+                long missing = read + len - granted;
+                if (missing > 0) {
+                    long step = Math.max(STEP_BYTES, missing);
+                    reserve(step);
+                    granted += step;
+                }
+            }
+        }
+    }
+}
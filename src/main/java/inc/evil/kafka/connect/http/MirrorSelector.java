@@ -0,0 +1,147 @@
+package inc.evil.kafka.connect.http;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Ranks a set of equivalent endpoints by an exponentially weighted moving average (EWMA) of their latency.
+ * <p>
+ * The first endpoint is the primary one; request URLs starting with it can be rewritten to any mirror.
+ * Endpoints without samples rank first so every mirror gets probed. A window of recent latencies
+ * across all mirrors is kept to derive the delay after which a request is hedged. The penalty recorded for a
+ * failed endpoint halves every {@value #PENALTY_HALF_LIFE_MS} ms until its next sample, so a mirror that
+ * recovers is tried again instead of being ranked last forever.
+ * </p>
+ */
+class MirrorSelector {
+
+    private static final double ALPHA = 0.2;
+    private static final int WINDOW = 128;
+    private static final int MIN_SAMPLES = 16;
+    private static final long PENALTY_HALF_LIFE_MS = 30000L;
+
+    private final List<String> endpoints;
+    private final long failurePenaltyMs;
+    private final double[] ewma;
+    private final long[] failedAt;
+    private final long[] samples = new long[WINDOW];
+    private int sampleCount;
+    private int nextSample;
+
+    /**
+     * @param endpoints        The primary endpoint followed by its mirrors.
+     * @param failurePenaltyMs The latency recorded for an endpoint when a request to it fails.
+     */
+    MirrorSelector(List<String> endpoints, long failurePenaltyMs) {
+        this.endpoints = new ArrayList<>(endpoints);
+        this.failurePenaltyMs = failurePenaltyMs;
+        this.ewma = new double[endpoints.size()];
+        Arrays.fill(ewma, Double.NaN);
+        this.failedAt = new long[endpoints.size()];
+        Arrays.fill(failedAt, -1L);
+    }
+
+    /**
+     * @param uri The request URL.
+     * @return Whether the URL belongs to the primary endpoint and can be served by a mirror.
+     */
+    boolean routes(String uri) {
+        String primary = endpoints.get(0);
+        if (!uri.startsWith(primary)) {
+            return false;
+        }
+        if (uri.length() == primary.length() || primary.endsWith("/")) {
+            return true;
+        }
+        char next = uri.charAt(primary.length());
+        return next == '/' || next == '?' || next == '#';
+    }
+
+    /**
+     * Rewrites a URL of the primary endpoint to point at the given mirror.
+     *
+     * @param uri      A URL starting with the primary endpoint.
+     * @param endpoint The mirror to send the request to.
+     * @return The rewritten URL.
+     */
+    String rewrite(String uri, String endpoint) {
+        return endpoint + uri.substring(endpoints.get(0).length());
+    }
+
+    /**
+     * @return The endpoints ordered from the lowest to the highest average latency.
+     */
+    List<String> ranked() {
+        return ranked(System.currentTimeMillis());
+    }
+
+    synchronized List<String> ranked(long nowMs) {
+        double[] latencies = new double[endpoints.size()];
+        Integer[] order = new Integer[endpoints.size()];
+        for (int i = 0; i < order.length; i++) {
+            latencies[i] = Double.isNaN(ewma[i]) ? 0.0 : decayed(i, nowMs);
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble(i -> latencies[i]));
+        List<String> ranked = new ArrayList<>(order.length);
+        for (Integer i : order) {
+            ranked.add(endpoints.get(i));
+        }
+        return ranked;
+    }
+
+    void recordSuccess(String endpoint, long latencyMs) {
+        recordSuccess(endpoint, latencyMs, System.currentTimeMillis());
+    }
+
+    synchronized void recordSuccess(String endpoint, long latencyMs, long nowMs) {
+        update(endpoint, latencyMs, nowMs, false);
+        samples[nextSample] = latencyMs;
+        nextSample = (nextSample + 1) % WINDOW;
+        sampleCount = Math.min(sampleCount + 1, WINDOW);
+    }
+
+    void recordFailure(String endpoint) {
+        recordFailure(endpoint, System.currentTimeMillis());
+    }
+
+    synchronized void recordFailure(String endpoint, long nowMs) {
+        update(endpoint, failurePenaltyMs, nowMs, true);
+    }
+
+    /**
+     * @param percentile The latency percentile, between 1 and 99.
+     * @return The given percentile of recent successful latencies, or -1 while too few samples were seen.
+     */
+    synchronized long hedgeDelayMs(int percentile) {
+        if (sampleCount < MIN_SAMPLES) {
+            return -1L;
+        }
+        long[] sorted = Arrays.copyOf(samples, sampleCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(index, 0)];
+    }
+
+    private void update(String endpoint, long latencyMs, long nowMs, boolean failure) {
+        int i = endpoints.indexOf(endpoint);
+        if (i < 0) {
+            return;
+        }
+        ewma[i] = Double.isNaN(ewma[i]) ? latencyMs : ALPHA * latencyMs + (1 - ALPHA) * decayed(i, nowMs);
+        failedAt[i] = failure ? nowMs : -1L;
+    }
+
+    /**
+     * @return The average latency of the endpoint, with the penalty of its last failure decayed by the time since.
+     */
+    private double decayed(int i, long nowMs) {
+        if (failedAt[i] < 0) {
+            return ewma[i];
+        }
+        long elapsedMs = Math.max(nowMs - failedAt[i], 0L);
+        return ewma[i] * Math.pow(0.5, (double) elapsedMs / PENALTY_HALF_LIFE_MS);
+    }
+}
@@ -0,0 +1,248 @@
+package inc.evil.kafka.connect.http;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.kafka.common.config.AbstractConfig;
+import org.apache.kafka.connect.errors.ConnectException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import inc.evil.kafka.connect.http.config.HttpSourceConfig;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Obtains OAuth2 access tokens using the client-credentials grant and caches them.
+ * <p>
+ * Providers are shared JVM-wide per token endpoint and client, so every task of every connector
+ * using the same credentials reuses one token. The token is refreshed in the background shortly
+ * before it expires, which keeps {@link #getAccessToken()} free of network round-trips on the poll path.
+ * </p>
+ */
+public class OAuth2TokenProvider implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(OAuth2TokenProvider.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final long RETRY_DELAY_MS = 5000L;
+    private static final long MIN_REFRESH_DELAY_MS = 1000L;
+    private static final Map<String, OAuth2TokenProvider> PROVIDERS = new HashMap<>();
+    private static final ScheduledExecutorService REFRESHER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "http-oauth2-token-refresher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String key;
+    private final String tokenUrl;
+    private final String clientId;
+    private final String clientSecret;
+    private final String scope;
+    private final long refreshMarginMs;
+
+    private CloseableHttpClient httpClient;
+    private volatile AccessToken token;
+    private ScheduledFuture<?> refreshTask;
+    private int references;
+    private volatile boolean closed;
+
+    OAuth2TokenProvider(String key, AbstractConfig config) {
+        this.key = key;
+        this.tokenUrl = config.getString(HttpSourceConfig.HTTP_AUTH_OAUTH2_TOKEN_URL);
+        this.clientId = config.getString(HttpSourceConfig.HTTP_AUTH_OAUTH2_CLIENT_ID);
+        this.clientSecret = config.getPassword(HttpSourceConfig.HTTP_AUTH_OAUTH2_CLIENT_SECRET).value();
+        this.scope = config.getString(HttpSourceConfig.HTTP_AUTH_OAUTH2_SCOPE);
+        this.refreshMarginMs = config.getInt(HttpSourceConfig.HTTP_AUTH_OAUTH2_REFRESH_MARGIN_MS);
+        this.httpClient = HttpClients.custom()
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(config.getInt(HttpSourceConfig.HTTP_CONNECT_TIMEOUT_MS), TimeUnit.MILLISECONDS)
+                        .setResponseTimeout(config.getInt(HttpSourceConfig.HTTP_READ_TIMEOUT_MS), TimeUnit.MILLISECONDS)
+                        .build())
+                .build();
+    }
+
+    /**
+     * Returns the shared provider for the credentials in the given configuration, creating it if needed.
+     * Every call must be paired with a {@link #close()} once the caller no longer needs tokens.
+     *
+     * @param config The configuration object containing the OAuth2 settings.
+     * @return The shared token provider.
+     */
+    public static synchronized OAuth2TokenProvider acquire(AbstractConfig config) {
+        String key = String.join("|",
+                config.getString(HttpSourceConfig.HTTP_AUTH_OAUTH2_TOKEN_URL),
+                config.getString(HttpSourceConfig.HTTP_AUTH_OAUTH2_CLIENT_ID),
+                config.getString(HttpSourceConfig.HTTP_AUTH_OAUTH2_SCOPE),
+                config.getPassword(HttpSourceConfig.HTTP_AUTH_OAUTH2_CLIENT_SECRET).value());
+        OAuth2TokenProvider provider = PROVIDERS.computeIfAbsent(key, k -> new OAuth2TokenProvider(k, config));
+        provider.references++;
+        return provider;
+    }
+
+    /**
+     * Returns the cached access token, fetching one synchronously only if none is cached yet
+     * or the cached one has already expired.
+     *
+     * @return The access token.
+     * @throws IOException If the token endpoint cannot be reached.
+     */
+    public String getAccessToken() throws IOException {
+        AccessToken current = token;
+        if (current != null && !current.isExpired(System.currentTimeMillis())) {
+            return current.value;
+        }
+        synchronized (this) {
+            current = token;
+            if (current != null && !current.isExpired(System.currentTimeMillis())) {
+                return current.value;
+            }
+            return refresh().value;
+        }
+    }
+
+    /**
+     * Replaces a token the server has rejected. If another caller already replaced it,
+     * the newer token is returned without contacting the token endpoint again.
+     *
+     * @param rejectedToken The token that was answered with 401 Unauthorized.
+     * @return A fresh access token.
+     * @throws IOException If the token endpoint cannot be reached.
+     */
+    public synchronized String refreshIfCurrent(String rejectedToken) throws IOException {
+        AccessToken current = token;
+        if (current != null && !current.value.equals(rejectedToken) && !current.isExpired(System.currentTimeMillis())) {
+            return current.value;
+        }
+        return refresh().value;
+    }
+
+    private synchronized AccessToken refresh() throws IOException {
+        AccessToken fetched = fetchToken();
+        this.token = fetched;
+        if (fetched.expiresAt != Long.MAX_VALUE) {
+            long age = System.currentTimeMillis() - fetched.fetchedAt;
+            scheduleRefresh(Math.max(refreshDelayMs(fetched.expiresAt - fetched.fetchedAt, refreshMarginMs) - age, MIN_REFRESH_DELAY_MS));
+        }
+        return fetched;
+    }
+
+    /**
+     * The refresh margin is capped at half the token lifetime, so that short-lived tokens are refreshed
+     * once per lifetime rather than continuously.
+     *
+     * @param lifetimeMs The lifetime of the token.
+     * @param marginMs   The configured margin before expiry.
+     * @return How long after it was fetched the token is refreshed.
+     */
+    static long refreshDelayMs(long lifetimeMs, long marginMs) {
+        return Math.max(lifetimeMs - Math.min(marginMs, lifetimeMs / 2), MIN_REFRESH_DELAY_MS);
+    }
+
+    private synchronized void scheduleRefresh(long delayMs) {
+        if (closed) {
+            return;
+        }
+        if (refreshTask != null) {
+            refreshTask.cancel(false);
+        }
+        refreshTask = REFRESHER.schedule(this::refreshInBackground, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void refreshInBackground() {
+        try {
+            refresh();
+            log.debug("Refreshed OAuth2 access token from {}", tokenUrl);
+        } catch (Exception e) {
+            log.warn("Failed to refresh OAuth2 access token from {}. Retrying in {} ms.", tokenUrl, RETRY_DELAY_MS, e);
+            scheduleRefresh(RETRY_DELAY_MS);
+        }
+    }
+
+    private AccessToken fetchToken() throws IOException {
+        StringBuilder form = new StringBuilder("grant_type=client_credentials");
+        if (scope != null && !scope.isEmpty()) {
+            form.append("&scope=").append(URLEncoder.encode(scope, StandardCharsets.UTF_8));
+        }
+        HttpPost request = new HttpPost(tokenUrl);
+        request.setEntity(new StringEntity(form.toString(), ContentType.APPLICATION_FORM_URLENCODED));
+        String credentials = URLEncoder.encode(clientId, StandardCharsets.UTF_8) + ":" + URLEncoder.encode(clientSecret, StandardCharsets.UTF_8);
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)));
+
+        log.info("Requesting OAuth2 access token from {}", tokenUrl);
+        long requestedAt = System.currentTimeMillis();
+        String response = httpClient.execute(request, new HttpApiClient.StringResponseHandler());
+        JsonNode json = MAPPER.readTree(response);
+        JsonNode accessToken = json.get("access_token");
+        if (accessToken == null || !accessToken.isTextual()) {
+            throw new ConnectException("OAuth2 token response from " + tokenUrl + " does not contain an access_token.");
+        }
+        JsonNode expiresIn = json.get("expires_in");
+        long expiresAt = expiresIn != null && expiresIn.canConvertToLong()
+                ? requestedAt + TimeUnit.SECONDS.toMillis(expiresIn.asLong())
+                : Long.MAX_VALUE;
+        return new AccessToken(accessToken.asText(), requestedAt, expiresAt);
+    }
+
+    /**
+     * Releases one reference to this provider. The background refresh and the underlying
+     * HTTP client are shut down once the last reference is released; further calls have no effect.
+     *
+     * @throws IOException If an I/O error occurs during client shutdown.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (OAuth2TokenProvider.class) {
+            if (closed || --references > 0) {
+                return;
+            }
+            PROVIDERS.remove(key, this);
+            closed = true;
+        }
+        synchronized (this) {
+            if (refreshTask != null) {
+                refreshTask.cancel(false);
+            }
+        }
+        httpClient.close();
+    }
+
+    /**
+     * A setter for the HTTP client. Used primarily for unit testing to inject a mock client.
+     *
+     * @param httpClient The mock or real HTTP client instance.
+     */
+    void setHttpClient(CloseableHttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    private static final class AccessToken {
+        private final String value;
+        private final long fetchedAt;
+        private final long expiresAt;
+
+        private AccessToken(String value, long fetchedAt, long expiresAt) {
+            this.value = value;
+            this.fetchedAt = fetchedAt;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+}
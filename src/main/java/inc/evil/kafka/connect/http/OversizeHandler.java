@@ -0,0 +1,182 @@
+package inc.evil.kafka.connect.http;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import inc.evil.kafka.connect.http.config.HttpSourceConfig;
+import org.apache.kafka.connect.header.ConnectHeaders;
+import org.apache.kafka.connect.header.Headers;
+import org.apache.kafka.connect.source.SourceRecord;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps record values below a size threshold, so that an occasional giant response does not exceed the
+ * producer's {@code max.request.size} and fail the task.
+ * <p>
+ * An oversized value is either split into ordered chunk records carrying the headers {@value #CHUNK_ID},
+ * {@value #CHUNK_INDEX} and {@value #CHUNK_COUNT} for reassembly, or written to a claim-check directory and
+ * replaced by a small JSON reference holding its path, size and SHA-256 checksum, marked by the header
+ * {@value #CLAIM_CHECK}. Chunks keep the key and source partition of the original record, so they land on the
+ * same Kafka partition in order. Only the last chunk carries the offset of the original record; earlier chunks
+ * carry the offset of the record before it, so a task restarted midway produces the whole value again rather
+ * than resuming past chunks that were never written. The chunk ID is the SHA-256 checksum of the whole value, so a
+ * value re-sent after a restart yields the same ID and consumers can drop the duplicate chunks.
+ * </p>
+ */
+final class OversizeHandler {
+
+    static final String CHUNK_ID = "http.chunk.id";
+    static final String CHUNK_INDEX = "http.chunk.index";
+    static final String CHUNK_COUNT = "http.chunk.count";
+    static final String CLAIM_CHECK = "http.claim.check";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int MAX_UTF8_BYTES_PER_CODE_POINT = 4;
+
+    private final long thresholdBytes;
+    private final boolean claimCheck;
+    private final Path claimCheckDir;
+
+    /**
+     * @param thresholdBytes The largest value size in UTF-8 bytes that is published as is.
+     * @param strategy       {@link HttpSourceConfig#OVERSIZE_CHUNK} or {@link HttpSourceConfig#OVERSIZE_CLAIM_CHECK}.
+     * @param claimCheckDir  The directory for claim-checked values; only used with the claim-check strategy.
+     */
+    OversizeHandler(long thresholdBytes, String strategy, Path claimCheckDir) {
+        this.thresholdBytes = Math.max(thresholdBytes, MAX_UTF8_BYTES_PER_CODE_POINT);
+        this.claimCheck = HttpSourceConfig.OVERSIZE_CLAIM_CHECK.equals(strategy);
+        this.claimCheckDir = claimCheckDir;
+    }
+
+    /**
+     * @param records      The records of one response.
+     * @param resumeOffset The offset the task resumes from before the first of the records.
+     * @return The records with every oversized value chunked or claim-checked; the same list if none was oversized.
+     * @throws IOException If a claim-checked value cannot be written.
+     */
+    List<SourceRecord> apply(List<SourceRecord> records, Map<String, ?> resumeOffset) throws IOException {
+        List<SourceRecord> result = null;
+        for (int i = 0; i < records.size(); i++) {
+            SourceRecord record = records.get(i);
+            Map<String, ?> previousOffset = i > 0 ? records.get(i - 1).sourceOffset() : resumeOffset;
+            boolean oversized = record.value() instanceof String && isOversized((String) record.value());
+            if (oversized && result == null) {
+                result = new ArrayList<>(records.subList(0, i));
+            }
+            if (oversized && claimCheck) {
+                result.add(claimCheck(record));
+            } else if (oversized) {
+                result.addAll(chunk(record, previousOffset));
+            } else if (result != null) {
+                result.add(record);
+            }
+        }
+        return result != null ? result : records;
+    }
+
+    private List<SourceRecord> chunk(SourceRecord record, Map<String, ?> previousOffset) throws IOException {
+        String value = (String) record.value();
+        List<String> pieces = new ArrayList<>();
+        int start = 0;
+        long bytes = 0;
+        for (int i = 0; i < value.length(); ) {
+            int codePoint = value.codePointAt(i);
+            int length = utf8Length(codePoint);
+            if (bytes + length > thresholdBytes) {
+                pieces.add(value.substring(start, i));
+                start = i;
+                bytes = 0;
+            }
+            bytes += length;
+            i += Character.charCount(codePoint);
+        }
+        pieces.add(value.substring(start));
+
+        String id = sha256(value.getBytes(StandardCharsets.UTF_8));
+        List<SourceRecord> chunks = new ArrayList<>(pieces.size());
+        for (int index = 0; index < pieces.size(); index++) {
+            Headers headers = new ConnectHeaders(record.headers())
+                    .addString(CHUNK_ID, id)
+                    .addInt(CHUNK_INDEX, index)
+                    .addInt(CHUNK_COUNT, pieces.size());
+            Map<String, ?> offset = index == pieces.size() - 1 ? record.sourceOffset() : previousOffset;
+            chunks.add(new SourceRecord(record.sourcePartition(), offset, record.topic(), record.kafkaPartition(),
+                    record.keySchema(), record.key(), record.valueSchema(), pieces.get(index), record.timestamp(), headers));
+        }
+        return chunks;
+    }
+
+    private SourceRecord claimCheck(SourceRecord record) throws IOException {
+        byte[] bytes = ((String) record.value()).getBytes(StandardCharsets.UTF_8);
+        String checksum = sha256(bytes);
+        Path file = claimCheckDir.resolve(checksum + ".payload");
+        if (!Files.exists(file)) {
+            Files.createDirectories(claimCheckDir);
+            Path temp = Files.createTempFile(claimCheckDir, checksum, ".tmp");
+            try {
+                Files.write(temp, bytes);
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+        ObjectNode reference = MAPPER.createObjectNode()
+                .put("path", file.toAbsolutePath().toString())
+                .put("size", bytes.length)
+                .put("sha256", checksum);
+        Headers headers = new ConnectHeaders(record.headers()).addBoolean(CLAIM_CHECK, true);
+        return record.newRecord(record.topic(), record.kafkaPartition(), record.keySchema(), record.key(),
+                record.valueSchema(), MAPPER.writeValueAsString(reference), record.timestamp(), headers);
+    }
+
+    private static String sha256(byte[] bytes) throws IOException {
+        try {
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(bytes)) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 is not available.", e);
+        }
+    }
+
+    /**
+     * Every char encodes to at least one and at most three UTF-8 bytes, so most values are decided by their length alone.
+     */
+    private boolean isOversized(String value) {
+        if (value.length() > thresholdBytes) {
+            return true;
+        }
+        return value.length() * 3L > thresholdBytes && utf8Length(value) > thresholdBytes;
+    }
+
+    private static long utf8Length(String value) {
+        long bytes = 0;
+        for (int i = 0; i < value.length(); ) {
+            int codePoint = value.codePointAt(i);
+            bytes += utf8Length(codePoint);
+            i += Character.charCount(codePoint);
+        }
+        return bytes;
+    }
+
+    private static int utf8Length(int codePoint) {
+        if (codePoint < 0x80) {
+            return 1;
+        }
+        if (codePoint < 0x800) {
+            return 2;
+        }
+        return codePoint < 0x10000 ? 3 : 4;
+    }
+}
@@ -0,0 +1,63 @@
+package inc.evil.kafka.connect.http;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides when a task polls next, spreading the polls of many tasks over the interval.
+ * <p>
+ * By default the next poll is due one interval after the last one. When staggered or aligned, polls fall on a
+ * grid of interval multiples instead: aligned to the wall clock, and shifted by a phase derived from the source
+ * partition when staggered, so that tasks restarting together with similar offsets still poll at different times.
+ * A random jitter can be added on top; it is drawn once per poll, so repeated checks agree on the due time.
+ * </p>
+ */
+final class PollSchedule {
+
+    private final long intervalMs;
+    private final boolean gridded;
+    private final long phaseMs;
+    private final long jitterMs;
+    private final long startTime;
+    private long scheduledFor = -1L;
+    private long scheduledTime;
+
+    /**
+     * @param intervalMs   The poll interval.
+     * @param stagger      Whether to shift polls by a phase derived from {@code partitionKey}.
+     * @param align        Whether to poll on wall-clock multiples of the interval.
+     * @param jitterMs     The maximum random delay added to each poll; 0 for none.
+     * @param partitionKey Identifies the source partition for the phase.
+     * @param startTime    When the task started; a task that never polled waits for the first grid point after it.
+     */
+    PollSchedule(long intervalMs, boolean stagger, boolean align, long jitterMs, String partitionKey, long startTime) {
+        this.intervalMs = intervalMs;
+        this.gridded = stagger || align;
+        this.phaseMs = stagger && intervalMs > 0 ? Math.floorMod(FingerprintIndex.hash(partitionKey), intervalMs) : 0L;
+        this.jitterMs = jitterMs;
+        this.startTime = startTime;
+    }
+
+    /**
+     * @param lastPollTime The time of the last successful poll, or 0 if there was none.
+     * @return The time at which the next poll is due.
+     */
+    long nextPollTime(long lastPollTime) {
+        if (lastPollTime != scheduledFor) {
+            scheduledFor = lastPollTime;
+            scheduledTime = due(lastPollTime) + (jitterMs > 0 ? ThreadLocalRandom.current().nextLong(jitterMs + 1) : 0L);
+        }
+        return scheduledTime;
+    }
+
+    long getPhaseMs() {
+        return phaseMs;
+    }
+
+    private long due(long lastPollTime) {
+        if (!gridded || intervalMs <= 0) {
+            return lastPollTime + intervalMs;
+        }
+        long after = lastPollTime > 0 ? lastPollTime : startTime;
+        return Math.floorDiv(after - phaseMs, intervalMs) * intervalMs + intervalMs + phaseMs;
+    }
+}
@@ -0,0 +1,226 @@
+package inc.evil.kafka.connect.http;
+
+import inc.evil.kafka.connect.http.HttpApiClient.FetchResult;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URISyntaxException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A JVM-wide layer shared by all {@link HttpApiClient} instances that coalesces identical requests
+ * into a single in-flight fetch and caches their responses.
+ * <p>
+ * Cached responses are kept for their {@code Cache-Control: max-age} or, without one, for the configured
+ * default TTL. The cache is bounded by the approximate size of the cached bodies and evicts the least
+ * recently used entries first. Clients configured with the same size limit share one cache, while in-flight
+ * requests are coalesced across all of them.
+ * </p>
+ */
+final class SharedResponseCache {
+
+    private static final ConcurrentMap<Long, SharedResponseCache> CACHES = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, CompletableFuture<FetchResult>> IN_FLIGHT = new ConcurrentHashMap<>();
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+
+    private SharedResponseCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param maxBytes The size limit of the cache; 0 disables caching, leaving only coalescing.
+     * @return The cache shared by all clients with this size limit.
+     */
+    static SharedResponseCache getInstance(long maxBytes) {
+        return CACHES.computeIfAbsent(Math.max(maxBytes, 0L), SharedResponseCache::new);
+    }
+
+    /**
+     * Returns a fresh cached response for the key, joins an identical request already in flight,
+     * or runs the fetcher and shares its result.
+     *
+     * @param key        The key identifying byte-identical requests.
+     * @param coalesce   Whether to join identical in-flight requests.
+     * @param defaultTtlMs How long to cache responses without a {@code Cache-Control} lifetime.
+     * @param fetcher    Performs the actual request.
+     * @param waiter     Waits for an identical request of another caller, so that the caller can cancel the wait.
+     * @return The response.
+     */
+    FetchResult fetch(String key, boolean coalesce, long defaultTtlMs, Fetcher fetcher, Waiter waiter) throws IOException, URISyntaxException {
+        if (maxBytes > 0) {
+            FetchResult cached = lookup(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        if (!coalesce) {
+            FetchResult result = fetcher.fetch();
+            store(key, result, defaultTtlMs);
+            return result;
+        }
+
+        CompletableFuture<FetchResult> own = new CompletableFuture<>();
+        CompletableFuture<FetchResult> existing = IN_FLIGHT.putIfAbsent(key, own);
+        if (existing != null) {
+            return waiter.await(existing.copy());
+        }
+        try {
+            FetchResult result = fetcher.fetch();
+            store(key, result, defaultTtlMs);
+            own.complete(result);
+            return result;
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            IN_FLIGHT.remove(key, own);
+        }
+    }
+
+    /**
+     * Waits for the result of an identical request of another caller.
+     *
+     * @param future A copy of the shared result, which the caller may cancel to stop waiting without affecting others.
+     * @return The shared response.
+     * @throws InterruptedIOException If the wait was interrupted or cancelled.
+     */
+    static FetchResult await(CompletableFuture<FetchResult> future) throws IOException, URISyntaxException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an identical in-flight request.");
+        } catch (CancellationException e) {
+            throw new InterruptedIOException("Cancelled while waiting for an identical in-flight request.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof URISyntaxException) {
+                throw (URISyntaxException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Identical in-flight request failed.", cause);
+        }
+    }
+
+    private synchronized FetchResult lookup(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            remove(key);
+            return null;
+        }
+        return entry.result;
+    }
+
+    private synchronized void store(String key, FetchResult result, long defaultTtlMs) {
+        long ttlMs = result.maxAgeMs >= 0 ? result.maxAgeMs : defaultTtlMs;
+        long size = sizeOf(key, result);
+        if (maxBytes <= 0 || ttlMs <= 0 || size > maxBytes) {
+            return;
+        }
+        remove(key);
+        entries.put(key, new Entry(result, System.currentTimeMillis() + ttlMs, size));
+        cachedBytes += size;
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (cachedBytes > maxBytes && eldest.hasNext()) {
+            cachedBytes -= eldest.next().getValue().size;
+            eldest.remove();
+        }
+    }
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            cachedBytes -= removed.size;
+        }
+    }
+
+    /**
+     * Empties every cache; used by tests.
+     */
+    static void clearAll() {
+        CACHES.values().forEach(SharedResponseCache::clear);
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        cachedBytes = 0L;
+    }
+
+    private static long sizeOf(String key, FetchResult result) {
+        return 2L * (key.length() + result.body.length());
+    }
+
+    /**
+     * Parses the freshness lifetime from a {@code Cache-Control} header.
+     *
+     * @param cacheControl The header value, may be null.
+     * @return The {@code max-age} in milliseconds, 0 if the response must not be cached, or -1 if unspecified.
+     */
+    static long freshnessLifetimeMs(String cacheControl) {
+        if (cacheControl == null || cacheControl.isEmpty()) {
+            return -1L;
+        }
+        long maxAgeMs = -1L;
+        for (String directive : cacheControl.split(",")) {
+            String normalized = directive.trim().toLowerCase();
+            if (normalized.equals("no-store") || normalized.equals("no-cache")) {
+                return 0L;
+            }
+            if (normalized.startsWith("max-age=")) {
+                try {
+                    maxAgeMs = TimeUnit.SECONDS.toMillis(Long.parseLong(normalized.substring("max-age=".length()).replace("\"", "")));
+                } catch (NumberFormatException e) {
+                    return 0L;
+                }
+            }
+        }
+        return maxAgeMs;
+    }
+
+    /**
+     * Performs the request whose result is shared.
+     */
+    @FunctionalInterface
+    interface Fetcher {
+        FetchResult fetch() throws IOException, URISyntaxException;
+    }
+
+    /**
+     * Waits for the shared result of an identical request, typically through {@link #await(CompletableFuture)}.
+     */
+    @FunctionalInterface
+    interface Waiter {
+        FetchResult await(CompletableFuture<FetchResult> shared) throws IOException, URISyntaxException;
+    }
+
+    private static final class Entry {
+        private final FetchResult result;
+        private final long expiresAt;
+        private final long size;
+
+        private Entry(FetchResult result, long expiresAt, long size) {
+            this.result = result;
+            this.expiresAt = expiresAt;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package inc.evil.kafka.connect.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares consecutive full snapshots of keyed elements and reports only what changed.
+ * <p>
+ * The previous snapshot is kept as a {@link FingerprintIndex} of key hashes to content fingerprints.
+ * While a new snapshot is offered element by element, a second index is built for it; once the snapshot
+ * is complete, keys missing from the new index are reported as deleted. The new index only replaces the old
+ * one when it is committed after the changes were handed off, so a snapshot whose changes were never
+ * published is aborted and its changes are reported again by the next snapshot.
+ * The index is not persisted, so the first snapshot after a restart reports every element as changed.
+ * </p>
+ */
+class SnapshotDiffer implements Closeable {
+
+    private final Path indexDirectory;
+    private final String name;
+
+    private FingerprintIndex previous;
+    private FingerprintIndex current;
+    private long snapshots;
+
+    /**
+     * @param indexDirectory The directory for memory-mapped index files, or null to keep the index on the heap.
+     * @param name           A name for the index files, unique within the directory.
+     */
+    SnapshotDiffer(Path indexDirectory, String name) {
+        this.indexDirectory = indexDirectory;
+        this.name = name;
+    }
+
+    /**
+     * Starts a new snapshot, discarding any snapshot that was started but not finished.
+     *
+     * @throws IOException If the index cannot be created.
+     */
+    void begin() throws IOException {
+        abort();
+        current = new FingerprintIndex(indexDirectory, name + "-" + (snapshots++), previous == null ? 0 : previous.size());
+    }
+
+    /**
+     * Offers one element of the current snapshot.
+     *
+     * @param key     The key of the element.
+     * @param content The serialized element.
+     * @return Whether the element is new or differs from the previous snapshot.
+     * @throws IOException If the index cannot be grown.
+     */
+    boolean offer(String key, String content) throws IOException {
+        long keyHash = FingerprintIndex.hash(key);
+        long fingerprint = FingerprintIndex.fingerprint(content);
+        current.put(keyHash, fingerprint, key);
+        return previous == null || previous.get(keyHash) != fingerprint;
+    }
+
+    /**
+     * Completes the current snapshot, which stays staged until it is committed or aborted.
+     *
+     * @return The keys present in the previous snapshot but not in this one.
+     */
+    List<String> finish() {
+        List<String> deleted = new ArrayList<>();
+        if (previous != null) {
+            FingerprintIndex next = current;
+            previous.forEach((keyHash, fingerprint, key) -> {
+                if (next.get(keyHash) == FingerprintIndex.ABSENT) {
+                    deleted.add(key);
+                }
+            });
+        }
+        return deleted;
+    }
+
+    /**
+     * Makes the finished snapshot the one the next snapshot is compared with.
+     *
+     * @throws IOException If the previous index cannot be released.
+     */
+    void commit() throws IOException {
+        if (current == null) {
+            return;
+        }
+        FingerprintIndex replaced = previous;
+        previous = current;
+        current = null;
+        if (replaced != null) {
+            replaced.close();
+        }
+    }
+
+    /**
+     * Discards a snapshot that could not be completed or whose changes were not published, keeping the previous
+     * one for the next comparison.
+     *
+     * @throws IOException If the index cannot be released.
+     */
+    void abort() throws IOException {
+        if (current != null) {
+            current.close();
+            current = null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        abort();
+        if (previous != null) {
+            previous.close();
+            previous = null;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package inc.evil.kafka.connect.http;
+
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.metrics.JmxReporter;
+import org.apache.kafka.common.metrics.KafkaMetricsContext;
+import org.apache.kafka.common.metrics.MetricConfig;
+import org.apache.kafka.common.metrics.Metrics;
+import org.apache.kafka.common.metrics.Sensor;
+import org.apache.kafka.common.metrics.stats.CumulativeSum;
+import org.apache.kafka.common.metrics.stats.Rate;
+import org.apache.kafka.common.utils.Time;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Worker-wide transfer metrics per endpoint, exposed over JMX under the {@code kafka.connect.http} domain.
+ * <p>
+ * For every endpoint ({@code host[:port]}) the bytes received on the wire and the bytes after content
+ * decoding are tracked, which shows how much a compressed transfer saves.
+ * </p>
+ */
+final class TransferMetrics {
+
+    private static final String GROUP = "http-endpoint-metrics";
+    private static final Metrics METRICS = new Metrics(
+            new MetricConfig(),
+            Collections.singletonList(new JmxReporter()),
+            Time.SYSTEM,
+            new KafkaMetricsContext("kafka.connect.http"));
+
+    private TransferMetrics() {
+    }
+
+    /**
+     * Records one response body.
+     *
+     * @param endpoint     The endpoint tag, see {@link #endpointOf(String)}.
+     * @param wireBytes    The bytes received on the wire, before decoding.
+     * @param decodedBytes The bytes after content decoding.
+     */
+    static void record(String endpoint, long wireBytes, long decodedBytes) {
+        sensor(endpoint, "wire-bytes", "received on the wire").record(wireBytes);
+        sensor(endpoint, "decoded-bytes", "after content decoding").record(decodedBytes);
+    }
+
+    /**
+     * @param uri A request URI.
+     * @return The {@code host[:port]} part of the URI used to tag metrics, or the URI itself if it cannot be parsed.
+     */
+    static String endpointOf(String uri) {
+        try {
+            String authority = URI.create(uri).getRawAuthority();
+            return authority != null ? authority : uri;
+        } catch (IllegalArgumentException e) {
+            return uri;
+        }
+    }
+
+    private static Sensor sensor(String endpoint, String name, String description) {
+        String sensorName = name + ":" + endpoint;
+        Sensor sensor = METRICS.getSensor(sensorName);
+        if (sensor != null) {
+            return sensor;
+        }
+        synchronized (METRICS) {
+            sensor = METRICS.getSensor(sensorName);
+            if (sensor == null) {
+                Map<String, String> tags = Collections.singletonMap("endpoint", endpoint);
+                sensor = METRICS.sensor(sensorName);
+                sensor.add(METRICS.metricName(name + "-total", GROUP, "Total response bytes " + description + ".", tags), new CumulativeSum());
+                sensor.add(METRICS.metricName(name + "-rate", GROUP, "Response bytes per second " + description + ".", tags), new Rate());
+            }
+            return sensor;
+        }
+    }
+
+    /**
+     * @param endpoint The endpoint tag.
+     * @param name     The metric name, e.g. {@code wire-bytes-total}.
+     * @return The current value of the metric, or 0 if it was never recorded. Used primarily for testing.
+     */
+    static double value(String endpoint, String name) {
+        MetricName metricName = METRICS.metricName(name, GROUP, Collections.singletonMap("endpoint", endpoint));
+        return METRICS.metric(metricName) == null ? 0.0 : (double) METRICS.metric(metricName).metricValue();
+    }
+}
@@ -8,6 +8,12 @@ import java.util.Map;
 public class HttpSourceConfig extends AbstractConfig {
 
     public static final String HTTP_URL = "http.url";
+    public static final String HTTP_MIRROR_URLS = "http.mirror.urls";
+    public static final String HTTP_HEDGE_PERCENTILE = "http.hedge.percentile";
+    public static final String HTTP_REQUEST_COALESCING = "http.request.coalescing";
+    public static final String HTTP_CACHE_MAX_BYTES = "http.cache.max.bytes";
+    public static final String HTTP_CACHE_TTL_MS = "http.cache.ttl.ms";
+    public static final String HTTP_ACCEPT_ENCODING = "http.accept.encoding";
     public static final String HTTP_QUERY_PARAMS = "http.query.params";
     public static final String HTTP_REQUEST_BODY = "http.request.body";
     public static final String HTTP_HEADERS = "http.headers";
@@ -16,11 +22,55 @@ public class HttpSourceConfig extends AbstractConfig {
     public static final String HTTP_AUTH_USERNAME = "http.auth.username";
     public static final String HTTP_AUTH_PASSWORD = "http.auth.password";
     public static final String HTTP_AUTH_BEARER = "http.auth.bearer";
+    public static final String HTTP_AUTH_OAUTH2_TOKEN_URL = "http.auth.oauth2.token.url";
+    public static final String HTTP_AUTH_OAUTH2_CLIENT_ID = "http.auth.oauth2.client.id";
+    public static final String HTTP_AUTH_OAUTH2_CLIENT_SECRET = "http.auth.oauth2.client.secret";
+    public static final String HTTP_AUTH_OAUTH2_SCOPE = "http.auth.oauth2.scope";
+    public static final String HTTP_AUTH_OAUTH2_REFRESH_MARGIN_MS = "http.auth.oauth2.refresh.margin.ms";
     public static final String HTTP_CONNECT_TIMEOUT_MS = "http.connect.timeout.ms";
     public static final String HTTP_READ_TIMEOUT_MS = "http.read.timeout.ms";
     public static final String HTTP_PROXY_HOST = "http.proxy.host";
     public static final String HTTP_PROXY_PORT = "http.proxy.port";
+    public static final String HTTP_MODE = "http.mode";
+    public static final String HTTP_FILE_CHUNK_BYTES = "http.file.chunk.bytes";
+    public static final String HTTP_RECORDS_SPLIT = "http.records.split";
+    public static final String HTTP_RECORDS_POINTER = "http.records.pointer";
+    public static final String HTTP_RECORDS_KEY_FIELD = "http.records.key.field";
+    public static final String HTTP_DIFF_ENABLED = "http.diff.enabled";
+    public static final String HTTP_DIFF_INDEX_DIR = "http.diff.index.dir";
+    public static final String HTTP_DEDUP_WINDOW_MS = "http.dedup.window.ms";
+    public static final String HTTP_DEDUP_ID_FIELD = "http.dedup.id.field";
+    public static final String HTTP_DEDUP_MEMORY_BYTES = "http.dedup.memory.bytes";
+    public static final String HTTP_INFLIGHT_MAX_RECORDS = "http.inflight.max.records";
+    public static final String HTTP_INFLIGHT_MAX_BYTES = "http.inflight.max.bytes";
+    public static final String HTTP_MEMORY_BUDGET_BYTES = "http.memory.budget.bytes";
+    public static final String HTTP_PREWARM_CONNECTIONS = "http.prewarm.connections";
+    public static final String HTTP_DNS_CACHE_TTL_MS = "http.dns.cache.ttl.ms";
+    public static final String HTTP_POLL_STAGGER = "http.poll.stagger";
+    public static final String HTTP_POLL_ALIGN = "http.poll.align";
+    public static final String HTTP_POLL_JITTER_MS = "http.poll.jitter.ms";
+    public static final String HTTP_URLS = "http.urls";
+    public static final String HTTP_FETCH_CONCURRENCY = "http.fetch.concurrency";
+    public static final String HTTP_DISCOVERY_URL = "http.discovery.url";
+    public static final String HTTP_DISCOVERY_INTERVAL_MS = "http.discovery.interval.ms";
+    public static final String HTTP_DISCOVERY_POINTER = "http.discovery.pointer";
+    public static final String HTTP_DISCOVERY_URL_FIELD = "http.discovery.url.field";
+    public static final String HTTP_BATCH_IDS = "http.batch.ids";
+    public static final String HTTP_BATCH_IDS_FILE = "http.batch.ids.file";
+    public static final String HTTP_BATCH_SIZE = "http.batch.size";
+    public static final String HTTP_BATCH_PARAM = "http.batch.param";
+    public static final String HTTP_BATCH_TASK_INDEX = "http.batch.task.index";
+    public static final String HTTP_BATCH_TASK_COUNT = "http.batch.task.count";
+    public static final String BATCH_IDS_PLACEHOLDER = "${ids}";
+    public static final String BATCH_IDS_JSON_PLACEHOLDER = "${ids.json}";
+    public static final String HTTP_OVERSIZE_THRESHOLD_BYTES = "http.oversize.threshold.bytes";
+    public static final String HTTP_OVERSIZE_STRATEGY = "http.oversize.strategy";
+    public static final String HTTP_CLAIM_CHECK_DIR = "http.claim.check.dir";
+    public static final String OVERSIZE_CHUNK = "chunk";
+    public static final String OVERSIZE_CLAIM_CHECK = "claim-check";
     public static final String TOPIC = "topic";
+    public static final String MODE_POLL = "poll";
+    public static final String MODE_FILE = "file";
     public static final String VERSION = "1.0";
 
     public static ConfigDef getConfig() {
@@ -35,6 +85,13 @@ public class HttpSourceConfig extends AbstractConfig {
                         ConfigDef.Importance.LOW,
                         "Optional HTTP request headers in 'key=value' pairs separated by commas. " +
                         "Example: 'Accept=application/json'.")
+                .define(HTTP_ACCEPT_ENCODING,
+                        ConfigDef.Type.LIST,
+                        "gzip,deflate",
+                        ConfigDef.ValidList.in("gzip", "x-gzip", "deflate"),
+                        ConfigDef.Importance.LOW,
+                        "Content encodings advertised in the 'Accept-Encoding' header. Compressed responses are decoded " +
+                        "while they are read. Set to an empty value to request uncompressed responses.")
                 .define(HTTP_QUERY_PARAMS,
                         ConfigDef.Type.STRING,
                         "",
@@ -56,6 +113,43 @@ public class HttpSourceConfig extends AbstractConfig {
                         1,
                         ConfigDef.Width.LONG,
                         HTTP_URL)
+                .define(HTTP_MIRROR_URLS,
+                        ConfigDef.Type.LIST,
+                        "",
+                        ConfigDef.Importance.MEDIUM,
+                        "Optional comma-separated base URLs of mirrors serving the same API as '" + HTTP_URL + "'. " +
+                        "Requests are routed to the endpoint with the lowest average latency and fail over to the others.",
+                        "Connection",
+                        3,
+                        ConfigDef.Width.LONG,
+                        HTTP_MIRROR_URLS)
+                .define(HTTP_HEDGE_PERCENTILE,
+                        ConfigDef.Type.INT,
+                        0,
+                        ConfigDef.Range.between(0, 99),
+                        ConfigDef.Importance.LOW,
+                        "Latency percentile after which a duplicate request is sent to the next mirror, using whichever " +
+                        "response arrives first. Requires '" + HTTP_MIRROR_URLS + "'. Default is 0 (hedging disabled).")
+                .define(HTTP_REQUEST_COALESCING,
+                        ConfigDef.Type.BOOLEAN,
+                        false,
+                        ConfigDef.Importance.LOW,
+                        "Whether identical GET or HEAD requests (same method, URL and headers) issued concurrently by any task " +
+                        "in the worker share a single in-flight fetch. Other methods are never shared or cached. Default is false.")
+                .define(HTTP_CACHE_MAX_BYTES,
+                        ConfigDef.Type.LONG,
+                        0L,
+                        ConfigDef.Range.atLeast(0),
+                        ConfigDef.Importance.LOW,
+                        "Size limit in bytes of the response cache shared by all tasks of the worker configured with the same limit. Least recently used responses are evicted first. " +
+                        "Default is 0 (caching disabled).")
+                .define(HTTP_CACHE_TTL_MS,
+                        ConfigDef.Type.LONG,
+                        0L,
+                        ConfigDef.Range.atLeast(0),
+                        ConfigDef.Importance.LOW,
+                        "How long responses without a 'Cache-Control: max-age' are cached. Responses marked 'no-store' or " +
+                        "'no-cache' are never cached. Default is 0 (only responses with max-age are cached).")
                 .define(HTTP_POLL_INTERVAL_MS,
                         ConfigDef.Type.INT,
                         60000,
@@ -73,6 +167,214 @@ public class HttpSourceConfig extends AbstractConfig {
                         2,
                         ConfigDef.Width.SHORT,
                         HTTP_METHOD)
+                .define(HTTP_MODE,
+                        ConfigDef.Type.STRING,
+                        MODE_POLL,
+                        ConfigDef.ValidString.in(MODE_POLL, MODE_FILE),
+                        ConfigDef.Importance.HIGH,
+                        "How the endpoint is read. '" + MODE_POLL + "' publishes the whole response once per poll interval. " +
+                        "'" + MODE_FILE + "' downloads a line-delimited file in Range requests, publishes one record per line " +
+                        "and resumes from the last committed byte after a restart.")
+                .define(HTTP_FILE_CHUNK_BYTES,
+                        ConfigDef.Type.INT,
+                        8 * 1024 * 1024,
+                        ConfigDef.Range.atLeast(1024),
+                        ConfigDef.Importance.LOW,
+                        "Size in bytes of each Range request in '" + MODE_FILE + "' mode. Default is 8388608 (8 MiB).")
+                .define(HTTP_RECORDS_SPLIT,
+                        ConfigDef.Type.BOOLEAN,
+                        false,
+                        ConfigDef.Importance.MEDIUM,
+                        "Whether the elements of a JSON array in the response are published as individual records " +
+                        "instead of publishing the whole response as one record. Default is false.")
+                .define(HTTP_RECORDS_POINTER,
+                        ConfigDef.Type.STRING,
+                        "",
+                        ConfigDef.Importance.MEDIUM,
+                        "JSON Pointer to the array of records in the response, e.g. '/data/items'. " +
+                        "Empty for a top-level array. Used when '" + HTTP_RECORDS_SPLIT + "' is true.")
+                .define(HTTP_RECORDS_KEY_FIELD,
+                        ConfigDef.Type.STRING,
+                        "",
+                        ConfigDef.Importance.MEDIUM,
+                        "Field of each record used as the Kafka record key, either a field name or a JSON Pointer such as '/meta/id'. " +
+                        "Used when '" + HTTP_RECORDS_SPLIT + "' is true.")
+                .define(HTTP_DIFF_ENABLED,
+                        ConfigDef.Type.BOOLEAN,
+                        false,
+                        ConfigDef.Importance.MEDIUM,
+                        "Whether each response is treated as a full snapshot and only records that were inserted or changed since " +
+                        "the previous poll are published, plus tombstones for deleted keys. Requires '" + HTTP_RECORDS_SPLIT + "' and '" +
+                        HTTP_RECORDS_KEY_FIELD + "'. Default is false.")
+                .define(HTTP_DIFF_INDEX_DIR,
+                        ConfigDef.Type.STRING,
+                        "",
+                        ConfigDef.Importance.LOW,
+                        "Optional directory where the snapshot fingerprint index is kept in memory-mapped files instead of the heap.")
+                .define(HTTP_DEDUP_WINDOW_MS,
+                        ConfigDef.Type.LONG,
+                        0L,
+                        ConfigDef.Range.atLeast(0L),
+                        ConfigDef.Importance.MEDIUM,
+                        "Drop split records whose ID was already published within this many milliseconds, e.g. when " +
+                        "consecutive incremental polls overlap. Requires '" + HTTP_RECORDS_SPLIT + "'. 0 disables deduplication.")
+                .define(HTTP_DEDUP_ID_FIELD,
+                        ConfigDef.Type.STRING,
+                        "",
+                        ConfigDef.Importance.MEDIUM,
+                        "Field of each record, either a field name or a JSON Pointer, holding the ID used for deduplication. " +
+                        "Defaults to '" + HTTP_RECORDS_KEY_FIELD + "'.")
+                .define(HTTP_DEDUP_MEMORY_BYTES,
+                        ConfigDef.Type.LONG,
+                        8L * 1024 * 1024,
+                        ConfigDef.Range.atLeast(1024L),
+                        ConfigDef.Importance.LOW,
+                        "Fixed memory budget of the deduplication window. When more IDs are published within the window " +
+                        "than fit, the oldest are forgotten early. Default is 8 MiB, about 260000 IDs.")
+                .define(HTTP_INFLIGHT_MAX_RECORDS,
+                        ConfigDef.Type.LONG,
+                        0L,
+                        ConfigDef.Range.atLeast(0L),
+                        ConfigDef.Importance.LOW,
+                        "Pause fetching while this many published records are not yet acknowledged by Kafka. 0 for no limit.")
+                .define(HTTP_INFLIGHT_MAX_BYTES,
+                        ConfigDef.Type.LONG,
+                        0L,
+                        ConfigDef.Range.atLeast(0L),
+                        ConfigDef.Importance.LOW,
+                        "Pause fetching while published records of about this many bytes are not yet acknowledged by Kafka. 0 for no limit.")
+                .define(HTTP_MEMORY_BUDGET_BYTES,
+                        ConfigDef.Type.LONG,
+                        0L,
+                        ConfigDef.Range.atLeast(0L),
+                        ConfigDef.Importance.LOW,
+                        "Byte budget for response payloads shared by all tasks in the worker. Tasks over budget wait for others " +
+                        "to hand off their records, at most '" + HTTP_READ_TIMEOUT_MS + "', before the poll is retried. 0 for no limit.")
+                .define(HTTP_PREWARM_CONNECTIONS,
+                        ConfigDef.Type.INT,
+                        0,
+                        ConfigDef.Range.between(0, 100),
+                        ConfigDef.Importance.LOW,
+                        "Number of connections to open to '" + HTTP_URL + "' when the task starts, so that the first poll " +
+                        "does not pay for DNS resolution and the TCP and TLS handshakes. Not done through a proxy. Default is 0.")
+                .define(HTTP_DNS_CACHE_TTL_MS,
+                        ConfigDef.Type.LONG,
+                        0L,
+                        ConfigDef.Range.atLeast(0L),
+                        ConfigDef.Importance.LOW,
+                        "How long resolved host addresses are reused by all tasks in the worker. 0 leaves caching to the JVM.")
+                .define(HTTP_POLL_STAGGER,
+                        ConfigDef.Type.BOOLEAN,
+                        false,
+                        ConfigDef.Importance.LOW,
+                        "Poll on a grid of '" + HTTP_POLL_INTERVAL_MS + "' multiples shifted by a phase derived from the source partition, " +
+                        "so that tasks restarting together do not poll at the same moment. Default is false.")
+                .define(HTTP_POLL_ALIGN,
+                        ConfigDef.Type.BOOLEAN,
+                        false,
+                        ConfigDef.Importance.LOW,
+                        "Poll on wall-clock multiples of '" + HTTP_POLL_INTERVAL_MS + "', e.g. at the top of every hour for 3600000. " +
+                        "Combined with '" + HTTP_POLL_STAGGER + "', the phase is added. Default is false.")
+                .define(HTTP_POLL_JITTER_MS,
+                        ConfigDef.Type.LONG,
+                        0L,
+                        ConfigDef.Range.atLeast(0L),
+                        ConfigDef.Importance.LOW,
+                        "Maximum random delay added to each poll. Default is 0.")
+                .define(HTTP_URLS,
+                        ConfigDef.Type.LIST,
+                        "",
+                        ConfigDef.Importance.MEDIUM,
+                        "Endpoints to poll instead of '" + HTTP_URL + "', each as its own source partition. They are spread across " +
+                        "the tasks, and each task fetches its endpoints concurrently. Not supported in file mode.")
+                .define(HTTP_FETCH_CONCURRENCY,
+                        ConfigDef.Type.INT,
+                        16,
+                        ConfigDef.Range.atLeast(1),
+                        ConfigDef.Importance.LOW,
+                        "Maximum number of concurrent requests per task when polling '" + HTTP_URLS + "'. On Java 21 and later " +
+                        "they run on virtual threads. Default is 16.")
+                .define(HTTP_DISCOVERY_URL,
+                        ConfigDef.Type.STRING,
+                        "",
+                        ConfigDef.Importance.MEDIUM,
+                        "Optional URL of a JSON index listing the endpoints to poll, fetched periodically by the connector. " +
+                        "The tasks are reconfigured whenever the listed endpoints change. Takes precedence over '" + HTTP_URLS + "'.")
+                .define(HTTP_DISCOVERY_INTERVAL_MS,
+                        ConfigDef.Type.LONG,
+                        300000L,
+                        ConfigDef.Range.atLeast(1000L),
+                        ConfigDef.Importance.LOW,
+                        "How often the discovery URL is fetched. Default is 300000 ms.")
+                .define(HTTP_DISCOVERY_POINTER,
+                        ConfigDef.Type.STRING,
+                        "",
+                        ConfigDef.Importance.LOW,
+                        "JSON Pointer to the array of endpoints in the discovery response. Empty for a top-level array.")
+                .define(HTTP_DISCOVERY_URL_FIELD,
+                        ConfigDef.Type.STRING,
+                        "",
+                        ConfigDef.Importance.LOW,
+                        "Field (or JSON Pointer) of each array element holding the endpoint URL. Empty if the elements are URL strings. " +
+                        "Relative URLs are resolved against the discovery URL.")
+                .define(HTTP_BATCH_IDS,
+                        ConfigDef.Type.LIST,
+                        "",
+                        ConfigDef.Importance.MEDIUM,
+                        "IDs to fetch in batches from '" + HTTP_URL + "'. Each batch is sent as the query parameter '" + HTTP_BATCH_PARAM + "' " +
+                        "and substituted for " + BATCH_IDS_PLACEHOLDER + " (comma-separated) or " + BATCH_IDS_JSON_PLACEHOLDER + " (JSON array " +
+                        "of strings) in '" + HTTP_REQUEST_BODY + "'. Batches are fetched concurrently, each as its own source partition.")
+                .define(HTTP_BATCH_IDS_FILE,
+                        ConfigDef.Type.STRING,
+                        "",
+                        ConfigDef.Importance.MEDIUM,
+                        "Path of a local file with one ID per line, read in addition to '" + HTTP_BATCH_IDS + "'. " +
+                        "Blank lines and lines starting with '#' are ignored.")
+                .define(HTTP_BATCH_SIZE,
+                        ConfigDef.Type.INT,
+                        100,
+                        ConfigDef.Range.atLeast(1),
+                        ConfigDef.Importance.LOW,
+                        "Maximum number of IDs per batch request. Default is 100.")
+                .define(HTTP_BATCH_PARAM,
+                        ConfigDef.Type.STRING,
+                        "",
+                        ConfigDef.Importance.LOW,
+                        "Query parameter carrying the comma-separated IDs of a batch, e.g. 'ids'. Empty to pass the IDs in the request body only.")
+                .define(HTTP_BATCH_TASK_INDEX,
+                        ConfigDef.Type.INT,
+                        0,
+                        ConfigDef.Range.atLeast(0),
+                        ConfigDef.Importance.LOW,
+                        "Set by the connector: the task fetches the batches whose position modulo '" + HTTP_BATCH_TASK_COUNT + "' equals this index.")
+                .define(HTTP_BATCH_TASK_COUNT,
+                        ConfigDef.Type.INT,
+                        1,
+                        ConfigDef.Range.atLeast(1),
+                        ConfigDef.Importance.LOW,
+                        "Set by the connector: the number of tasks sharing the batches.")
+                .define(HTTP_OVERSIZE_THRESHOLD_BYTES,
+                        ConfigDef.Type.LONG,
+                        0L,
+                        ConfigDef.Range.atLeast(0L),
+                        ConfigDef.Importance.MEDIUM,
+                        "Record values larger than this many UTF-8 bytes are handled by '" + HTTP_OVERSIZE_STRATEGY + "'. " +
+                        "Keep it below the producer's max.request.size. Default is 0 (disabled).")
+                .define(HTTP_OVERSIZE_STRATEGY,
+                        ConfigDef.Type.STRING,
+                        OVERSIZE_CHUNK,
+                        ConfigDef.ValidString.in(OVERSIZE_CHUNK, OVERSIZE_CLAIM_CHECK),
+                        ConfigDef.Importance.MEDIUM,
+                        "'" + OVERSIZE_CHUNK + "' splits oversized values into ordered records with reassembly headers. " +
+                        "'" + OVERSIZE_CLAIM_CHECK + "' writes them to '" + HTTP_CLAIM_CHECK_DIR + "' and publishes a reference with " +
+                        "their size and SHA-256 checksum instead.")
+                .define(HTTP_CLAIM_CHECK_DIR,
+                        ConfigDef.Type.STRING,
+                        "",
+                        ConfigDef.Importance.LOW,
+                        "Directory where oversized values are written in '" + OVERSIZE_CLAIM_CHECK + "' mode. The path is " +
+                                "resolved on the worker running the task, so consumers on other hosts can only read it if it is " +
+                                "shared storage mounted at the same path. Files are never deleted by the connector.")
                 .define(HTTP_AUTH_USERNAME,
                         ConfigDef.Type.STRING,
                         "",
@@ -88,6 +390,33 @@ public class HttpSourceConfig extends AbstractConfig {
                         "",
                         ConfigDef.Importance.MEDIUM,
                         "Bearer token for Authorization header. Example: 'eyJhbGciOi...'.")
+                .define(HTTP_AUTH_OAUTH2_TOKEN_URL,
+                        ConfigDef.Type.STRING,
+                        "",
+                        ConfigDef.Importance.MEDIUM,
+                        "OAuth2 token endpoint used for the client-credentials grant. " +
+                        "When set, it takes precedence over '" + HTTP_AUTH_BEARER + "' and Basic Authentication.")
+                .define(HTTP_AUTH_OAUTH2_CLIENT_ID,
+                        ConfigDef.Type.STRING,
+                        "",
+                        ConfigDef.Importance.MEDIUM,
+                        "OAuth2 client id. Used together with '" + HTTP_AUTH_OAUTH2_CLIENT_SECRET + "'.")
+                .define(HTTP_AUTH_OAUTH2_CLIENT_SECRET,
+                        ConfigDef.Type.PASSWORD,
+                        "",
+                        ConfigDef.Importance.MEDIUM,
+                        "OAuth2 client secret. Used together with '" + HTTP_AUTH_OAUTH2_CLIENT_ID + "'.")
+                .define(HTTP_AUTH_OAUTH2_SCOPE,
+                        ConfigDef.Type.STRING,
+                        "",
+                        ConfigDef.Importance.LOW,
+                        "Optional space-separated OAuth2 scopes requested with the token.")
+                .define(HTTP_AUTH_OAUTH2_REFRESH_MARGIN_MS,
+                        ConfigDef.Type.INT,
+                        60000,
+                        ConfigDef.Range.atLeast(0),
+                        ConfigDef.Importance.LOW,
+                        "How long before expiry the cached OAuth2 token is refreshed in the background. Default is 60000 ms.")
                 .define(HTTP_CONNECT_TIMEOUT_MS,
                         ConfigDef.Type.INT,
                         5000,
@@ -0,0 +1,33 @@
+package inc.evil.kafka.connect.http;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates the executors that run blocking fetches concurrently.
+ * <p>
+ * This is the Java 21 variant, packaged under {@code META-INF/versions/21} of the multi-release JAR.
+ * It starts a virtual thread per fetch, so a task can wait on thousands of slow requests without
+ * holding a platform thread for each.
+ * </p>
+ */
+final class FetchExecutors {
+
+    private FetchExecutors() {
+    }
+
+    /**
+     * @param name The prefix of the thread names.
+     * @return A new executor that starts a virtual thread for every task.
+     */
+    static ExecutorService newExecutor(String name) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+    }
+
+    /**
+     * @return Whether the executors run fetches on virtual threads.
+     */
+    static boolean usesVirtualThreads() {
+        return true;
+    }
+}
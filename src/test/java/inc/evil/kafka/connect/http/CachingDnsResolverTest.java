@@ -0,0 +1,48 @@
+package inc.evil.kafka.connect.http;
+
+import org.apache.hc.client5.http.DnsResolver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CachingDnsResolverTest {
+
+    private final DnsResolver delegate = mock(DnsResolver.class);
+
+    @AfterEach
+    public void tearDown() {
+        CachingDnsResolver.clear();
+    }
+
+    @Test
+    void resolve_withinTtl_reusesAddressesAcrossResolvers() throws Exception {
+        InetAddress[] addresses = {InetAddress.getLoopbackAddress()};
+        when(delegate.resolve("api.example.com")).thenReturn(addresses);
+
+        InetAddress[] first = new CachingDnsResolver(delegate, 60_000L).resolve("api.example.com");
+        InetAddress[] second = new CachingDnsResolver(delegate, 60_000L).resolve("api.example.com");
+
+        assertThat(first).containsExactly(addresses);
+        assertThat(second).containsExactly(addresses);
+        verify(delegate, times(1)).resolve("api.example.com");
+    }
+
+    @Test
+    void resolve_afterTtl_resolvesAgain() throws Exception {
+        when(delegate.resolve("api.example.com")).thenReturn(new InetAddress[]{InetAddress.getLoopbackAddress()});
+        CachingDnsResolver resolver = new CachingDnsResolver(delegate, 1L);
+
+        resolver.resolve("api.example.com");
+        Thread.sleep(5L);
+        resolver.resolve("api.example.com");
+
+        verify(delegate, times(2)).resolve("api.example.com");
+    }
+}
@@ -0,0 +1,62 @@
+package inc.evil.kafka.connect.http;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DedupWindowTest {
+
+    @Test
+    void markIfAbsent_withIdSeenWithinWindow_returnsFalse() {
+        DedupWindow window = new DedupWindow(1000L, 1024L);
+
+        assertThat(window.markIfAbsent("a", 0L)).isTrue();
+        assertThat(window.markIfAbsent("b", 10L)).isTrue();
+        assertThat(window.markIfAbsent("a", 999L)).isFalse();
+    }
+
+    @Test
+    void contains_withUnmarkedOrExpiredId_returnsFalse() {
+        DedupWindow window = new DedupWindow(1000L, 1024L);
+        window.markIfAbsent("a", 0L);
+
+        assertThat(window.contains("a", 999L)).isTrue();
+        assertThat(window.contains("b", 999L)).isFalse();
+        assertThat(window.contains("a", 1000L)).isFalse();
+    }
+
+    @Test
+    void markIfAbsent_withIdOlderThanWindow_returnsTrue() {
+        DedupWindow window = new DedupWindow(1000L, 1024L);
+        window.markIfAbsent("a", 0L);
+
+        assertThat(window.markIfAbsent("a", 1000L)).isTrue();
+        assertThat(window.size()).isEqualTo(1);
+    }
+
+    @Test
+    void markIfAbsent_withMoreIdsThanBudget_forgetsOldestAndStaysBounded() {
+        DedupWindow window = new DedupWindow(Long.MAX_VALUE / 2, 128L * DedupWindow.BYTES_PER_ID);
+
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(window.markIfAbsent("id-" + i, i)).isTrue();
+        }
+
+        assertThat(window.size()).isEqualTo(128);
+        assertThat(window.markIfAbsent("id-9999", 10_000L)).isFalse();
+        assertThat(window.markIfAbsent("id-9900", 10_000L)).isFalse();
+        assertThat(window.markIfAbsent("id-0", 10_000L)).isTrue();
+    }
+
+    @Test
+    void markIfAbsent_withBudgetJustBelowPowerOfTwo_keepsSetAtMostHalfFull() {
+        DedupWindow window = new DedupWindow(Long.MAX_VALUE / 2, 127L * DedupWindow.BYTES_PER_ID);
+
+        for (int i = 0; i < 10_000; i++) {
+            window.markIfAbsent("id-" + i, i);
+        }
+
+        assertThat(window.size()).isEqualTo(64);
+        assertThat(window.markIfAbsent("id-9999", 10_000L)).isFalse();
+    }
+}
@@ -0,0 +1,55 @@
+package inc.evil.kafka.connect.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FileChunkTest {
+
+    @Test
+    void read_withTrailingPartialLine_leavesItForTheNextRange() throws IOException {
+        FileChunk chunk = FileChunk.read(stream("a,1\r\nb,2\nc,"), 100L, 1000L, "\"v1\"");
+
+        assertThat(chunk.getLines()).containsExactly("a,1", "b,2");
+        assertThat(chunk.getNextPosition(0)).isEqualTo(105L);
+        assertThat(chunk.getNextPosition(1)).isEqualTo(109L);
+        assertThat(chunk.getEndPosition()).isEqualTo(109L);
+        assertThat(chunk.isEndOfFile()).isFalse();
+        assertThat(chunk.getEtag()).isEqualTo("\"v1\"");
+    }
+
+    @Test
+    void read_withLastRangeOfFile_emitsUnterminatedLine() throws IOException {
+        FileChunk chunk = FileChunk.read(stream("a\n\nb"), 0L, 4L, null);
+
+        assertThat(chunk.getLines()).containsExactly("a", "b");
+        assertThat(chunk.getEndPosition()).isEqualTo(4L);
+        assertThat(chunk.isEndOfFile()).isTrue();
+    }
+
+    @Test
+    void read_withRangeFromByteBeforeLineBoundary_reportsLeadingLineFeed() throws IOException {
+        FileChunk appended = FileChunk.read(stream("\nb\n"), 1L, 4L, null);
+        FileChunk regenerated = FileChunk.read(stream("xb\n"), 1L, 4L, null);
+
+        assertThat(appended.startsWithLineFeed()).isTrue();
+        assertThat(appended.getLines()).containsExactly("b");
+        assertThat(regenerated.startsWithLineFeed()).isFalse();
+        assertThat(FileChunk.empty(1L, 1L, null).startsWithLineFeed()).isFalse();
+    }
+
+    @Test
+    void totalLength_withContentRangeHeaders_parsesCompleteLength() {
+        assertThat(HttpApiClient.RangeResponseHandler.totalLength("bytes 0-99/1234")).isEqualTo(1234L);
+        assertThat(HttpApiClient.RangeResponseHandler.totalLength("bytes */1234")).isEqualTo(1234L);
+        assertThat(HttpApiClient.RangeResponseHandler.totalLength("bytes 0-99/*")).isEqualTo(-1L);
+    }
+
+    private static ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,30 +1,53 @@
 package inc.evil.kafka.connect.http;
 
 import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.classic.methods.HttpPost;
 import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpHeaders;
 import org.apache.hc.core5.http.HttpStatus;
 import org.apache.hc.core5.http.ParseException;
 import org.apache.hc.core5.http.io.HttpClientResponseHandler;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
 import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.http.message.BasicClassicHttpResponse;
+import org.apache.hc.core5.http.message.BasicHeader;
 import org.apache.kafka.common.config.AbstractConfig;
 import org.apache.kafka.common.config.ConfigDef;
 import org.apache.kafka.connect.errors.ConnectException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -42,6 +65,17 @@ public class HttpApiClientTest {
     private static class DummyConfig extends AbstractConfig {
         public DummyConfig(Map<String, String> originalProps) {
             super(new ConfigDef()
+                            .define("http.url", ConfigDef.Type.STRING, "http://example.com", ConfigDef.Importance.LOW, "HTTP URL")
+                            .define("http.mirror.urls", ConfigDef.Type.LIST, "", ConfigDef.Importance.LOW, "HTTP mirror URLs")
+                            .define("http.hedge.percentile", ConfigDef.Type.INT, 0, ConfigDef.Importance.LOW, "Hedge percentile")
+                            .define("http.request.coalescing", ConfigDef.Type.BOOLEAN, false, ConfigDef.Importance.LOW, "Request coalescing")
+                            .define("http.cache.max.bytes", ConfigDef.Type.LONG, 0L, ConfigDef.Importance.LOW, "Cache size")
+                            .define("http.cache.ttl.ms", ConfigDef.Type.LONG, 0L, ConfigDef.Importance.LOW, "Cache TTL")
+                            .define("http.memory.budget.bytes", ConfigDef.Type.LONG, 0L, ConfigDef.Importance.LOW, "Memory budget")
+                            .define("http.prewarm.connections", ConfigDef.Type.INT, 0, ConfigDef.Importance.LOW, "Pre-warmed connections")
+                            .define("http.dns.cache.ttl.ms", ConfigDef.Type.LONG, 0L, ConfigDef.Importance.LOW, "DNS cache TTL")
+                            .define("http.fetch.concurrency", ConfigDef.Type.INT, 16, ConfigDef.Importance.LOW, "Fetch concurrency")
+                            .define("http.accept.encoding", ConfigDef.Type.LIST, "gzip,deflate", ConfigDef.Importance.LOW, "Accepted encodings")
                             .define("http.proxy.host", ConfigDef.Type.STRING, "", ConfigDef.Importance.LOW, "HTTP proxy host")
                             .define("http.proxy.port", ConfigDef.Type.INT, -1, ConfigDef.Importance.LOW, "HTTP proxy port")
                             .define("http.query.params", ConfigDef.Type.STRING, "", ConfigDef.Importance.LOW, "HTTP query parameters")
@@ -50,6 +84,11 @@ public class HttpApiClientTest {
                             .define("http.auth.username", ConfigDef.Type.STRING, "", ConfigDef.Importance.LOW, "HTTP auth username")
                             .define("http.auth.password", ConfigDef.Type.PASSWORD, "", ConfigDef.Importance.LOW, "HTTP auth password")
                             .define("http.auth.bearer", ConfigDef.Type.PASSWORD, "", ConfigDef.Importance.LOW, "HTTP auth bearer token")
+                            .define("http.auth.oauth2.token.url", ConfigDef.Type.STRING, "", ConfigDef.Importance.LOW, "OAuth2 token URL")
+                            .define("http.auth.oauth2.client.id", ConfigDef.Type.STRING, "", ConfigDef.Importance.LOW, "OAuth2 client id")
+                            .define("http.auth.oauth2.client.secret", ConfigDef.Type.PASSWORD, "", ConfigDef.Importance.LOW, "OAuth2 client secret")
+                            .define("http.auth.oauth2.scope", ConfigDef.Type.STRING, "", ConfigDef.Importance.LOW, "OAuth2 scope")
+                            .define("http.auth.oauth2.refresh.margin.ms", ConfigDef.Type.INT, 60000, ConfigDef.Importance.LOW, "OAuth2 refresh margin")
                             .define("http.connect.timeout.ms", ConfigDef.Type.INT, 10000, ConfigDef.Importance.LOW, "Connection timeout")
                             .define("http.read.timeout.ms", ConfigDef.Type.INT, 30000, ConfigDef.Importance.LOW, "Read timeout"),
                     originalProps
@@ -122,6 +161,320 @@ public class HttpApiClientTest {
                 .isInstanceOf(ConnectException.class);
     }
 
+    @Test
+    void close_calledTwice_keepsTokenProviderOfOtherClient() throws Exception {
+        DummyConfig config = new DummyConfig(Map.of(
+                "http.auth.oauth2.token.url", "http://auth.example.com/token",
+                "http.auth.oauth2.client.id", "double-close-client",
+                "http.auth.oauth2.client.secret", "secret"
+        ));
+        HttpApiClient closedTwice = new HttpApiClient(config);
+        HttpApiClient live = new HttpApiClient(config);
+        OAuth2TokenProvider shared = OAuth2TokenProvider.acquire(config);
+        shared.close();
+
+        closedTwice.close();
+        closedTwice.close();
+
+        OAuth2TokenProvider current = OAuth2TokenProvider.acquire(config);
+        assertThat(current).isSameAs(shared);
+        current.close();
+        live.close();
+    }
+
+    @Test
+    void executeRequest_withRejectedOAuth2Token_refreshesTokenAndRetriesOnce() throws Exception {
+        Map<String, String> props = Map.of(
+                "http.auth.oauth2.token.url", "http://auth.example.com/token",
+                "http.auth.oauth2.client.id", "client",
+                "http.auth.oauth2.client.secret", "secret"
+        );
+        DummyConfig config = new DummyConfig(props);
+        HttpApiClient oauthApiClient = new HttpApiClient(config);
+        oauthApiClient.setHttpClient(mockHttpClient);
+        CloseableHttpClient mockTokenClient = mock(CloseableHttpClient.class);
+        OAuth2TokenProvider tokenProvider = OAuth2TokenProvider.acquire(config);
+        tokenProvider.setHttpClient(mockTokenClient);
+        when(mockTokenClient.execute(any(HttpPost.class), any(HttpClientResponseHandler.class)))
+                .thenReturn("{\"access_token\":\"stale\",\"expires_in\":3600}")
+                .thenReturn("{\"access_token\":\"fresh\",\"expires_in\":3600}");
+
+        when(mockResponse.getCode()).thenReturn(HttpStatus.SC_UNAUTHORIZED, HttpStatus.SC_OK);
+        when(mockResponse.getEntity()).thenReturn(new StringEntity("authorized"));
+        when(mockHttpClient.execute(any(HttpGet.class), any(HttpClientResponseHandler.class)))
+                .thenAnswer(invocation -> {
+                    HttpClientResponseHandler<String> handler = invocation.getArgument(1);
+                    return handler.handleResponse(mockResponse);
+                });
+
+        String responseBody = oauthApiClient.executeRequest("http://example.com", "GET");
+
+        assertThat(responseBody).isEqualTo("authorized");
+        ArgumentCaptor<HttpGet> requests = ArgumentCaptor.forClass(HttpGet.class);
+        verify(mockHttpClient, times(2)).execute(requests.capture(), any(HttpClientResponseHandler.class));
+        assertThat(requests.getAllValues().get(1).getFirstHeader(HttpHeaders.AUTHORIZATION).getValue()).isEqualTo("Bearer fresh");
+
+        tokenProvider.close();
+        oauthApiClient.close();
+    }
+
+    @Test
+    void executeRequest_withFailingPrimaryAndMirror_failsOverToMirror() throws Exception {
+        Map<String, String> props = Map.of(
+                "http.url", "http://primary.example.com",
+                "http.mirror.urls", "http://mirror.example.com"
+        );
+        HttpApiClient mirroredApiClient = new HttpApiClient(new DummyConfig(props));
+        mirroredApiClient.setHttpClient(mockHttpClient);
+
+        when(mockResponse.getCode()).thenReturn(HttpStatus.SC_SERVICE_UNAVAILABLE, HttpStatus.SC_OK);
+        when(mockResponse.getEntity()).thenReturn(new StringEntity("from_mirror"));
+        when(mockHttpClient.execute(any(HttpGet.class), any(HttpClientResponseHandler.class)))
+                .thenAnswer(invocation -> {
+                    HttpClientResponseHandler<String> handler = invocation.getArgument(1);
+                    return handler.handleResponse(mockResponse);
+                });
+
+        String responseBody = mirroredApiClient.executeRequest("http://primary.example.com/items?page=1", "GET");
+
+        assertThat(responseBody).isEqualTo("from_mirror");
+        ArgumentCaptor<HttpGet> requests = ArgumentCaptor.forClass(HttpGet.class);
+        verify(mockHttpClient, times(2)).execute(requests.capture(), any(HttpClientResponseHandler.class));
+        assertThat(requests.getAllValues().get(1).getUri().toString()).isEqualTo("http://mirror.example.com/items?page=1");
+    }
+
+    @Test
+    void executeRequest_withResponseCache_servesRepeatFetchFromCache() throws Exception {
+        Map<String, String> props = Map.of(
+                "http.cache.max.bytes", "1048576",
+                "http.cache.ttl.ms", "60000"
+        );
+        HttpApiClient cachingApiClient = new HttpApiClient(new DummyConfig(props));
+        cachingApiClient.setHttpClient(mockHttpClient);
+
+        when(mockResponse.getCode()).thenReturn(HttpStatus.SC_OK);
+        when(mockResponse.getEntity()).thenReturn(new StringEntity("cached"));
+        when(mockHttpClient.execute(any(HttpGet.class), any(HttpClientResponseHandler.class)))
+                .thenAnswer(invocation -> {
+                    HttpClientResponseHandler<String> handler = invocation.getArgument(1);
+                    return handler.handleResponse(mockResponse);
+                });
+
+        String first = cachingApiClient.executeRequest("http://cache.example.com", "GET");
+        String second = cachingApiClient.executeRequest("http://cache.example.com", "GET");
+
+        assertThat(first).isEqualTo("cached");
+        assertThat(second).isEqualTo("cached");
+        verify(mockHttpClient, times(1)).execute(any(HttpGet.class), any(HttpClientResponseHandler.class));
+        SharedResponseCache.clearAll();
+    }
+
+    @Test
+    void executeRequest_withResponseCacheAndPost_alwaysReachesServer() throws Exception {
+        Map<String, String> props = Map.of(
+                "http.request.coalescing", "true",
+                "http.cache.max.bytes", "1048576",
+                "http.cache.ttl.ms", "60000"
+        );
+        HttpApiClient cachingApiClient = new HttpApiClient(new DummyConfig(props));
+        cachingApiClient.setHttpClient(mockHttpClient);
+        when(mockResponse.getCode()).thenReturn(HttpStatus.SC_OK);
+        when(mockResponse.getEntity()).thenAnswer(invocation -> new StringEntity("created"));
+        when(mockHttpClient.execute(any(HttpPost.class), any(HttpClientResponseHandler.class)))
+                .thenAnswer(invocation -> {
+                    HttpClientResponseHandler<String> handler = invocation.getArgument(1);
+                    return handler.handleResponse(mockResponse);
+                });
+
+        cachingApiClient.executeRequest("http://cache.example.com", "POST");
+        cachingApiClient.executeRequest("http://cache.example.com", "POST");
+
+        verify(mockHttpClient, times(2)).execute(any(HttpPost.class), any(HttpClientResponseHandler.class));
+        SharedResponseCache.clearAll();
+    }
+
+    @Test
+    void executeRequest_withGzipEncodedResponse_decodesBodyAndRecordsMetrics() throws Exception {
+        String expectedResponse = "{\"items\":[" + "{\"id\":1},".repeat(100) + "{\"id\":2}]}";
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(expectedResponse.getBytes(StandardCharsets.UTF_8));
+        }
+        when(mockResponse.getCode()).thenReturn(HttpStatus.SC_OK);
+        when(mockResponse.getEntity()).thenReturn(new ByteArrayEntity(compressed.toByteArray(), ContentType.APPLICATION_JSON, "gzip"));
+        when(mockHttpClient.execute(any(HttpGet.class), any(HttpClientResponseHandler.class)))
+                .thenAnswer(invocation -> {
+                    HttpClientResponseHandler<String> handler = invocation.getArgument(1);
+                    return handler.handleResponse(mockResponse);
+                });
+
+        String responseBody = apiClient.executeRequest("http://gzip.example.com", "GET");
+
+        assertThat(responseBody).isEqualTo(expectedResponse);
+        ArgumentCaptor<HttpGet> request = ArgumentCaptor.forClass(HttpGet.class);
+        verify(mockHttpClient).execute(request.capture(), any(HttpClientResponseHandler.class));
+        assertThat(request.getValue().getFirstHeader(HttpHeaders.ACCEPT_ENCODING).getValue()).isEqualTo("gzip, deflate");
+        assertThat(TransferMetrics.value("gzip.example.com", "wire-bytes-total")).isEqualTo(compressed.size());
+        assertThat(TransferMetrics.value("gzip.example.com", "decoded-bytes-total")).isEqualTo(expectedResponse.length());
+    }
+
+    @Test
+    void executeRequest_withMemoryBudget_holdsReservationUntilReleased() throws Exception {
+        HttpApiClient budgetedApiClient = new HttpApiClient(new DummyConfig(Map.of("http.memory.budget.bytes", "1048576")));
+        budgetedApiClient.setHttpClient(mockHttpClient);
+        when(mockResponse.getCode()).thenReturn(HttpStatus.SC_OK);
+        when(mockResponse.getEntity()).thenReturn(new StringEntity("0123456789"));
+        when(mockHttpClient.execute(any(HttpGet.class), any(HttpClientResponseHandler.class)))
+                .thenAnswer(invocation -> {
+                    HttpClientResponseHandler<String> handler = invocation.getArgument(1);
+                    return handler.handleResponse(mockResponse);
+                });
+
+        String responseBody = budgetedApiClient.executeRequest("http://budget.example.com", "GET");
+        long reserved = MemoryBudget.getInstance().getReserved();
+        budgetedApiClient.releaseReservedMemory();
+
+        assertThat(responseBody).isEqualTo("0123456789");
+        assertThat(reserved).isGreaterThanOrEqualTo(10L);
+        assertThat(MemoryBudget.getInstance().getReserved()).isZero();
+        MemoryBudget.getInstance().setLimit(0L);
+    }
+
+    @Test
+    void abort_withRequestInFlight_cancelsRequest() throws Exception {
+        when(mockHttpClient.execute(any(HttpGet.class), any(HttpClientResponseHandler.class)))
+                .thenAnswer(invocation -> {
+                    HttpGet request = invocation.getArgument(0);
+                    long deadline = System.currentTimeMillis() + 5000L;
+                    while (!request.isCancelled() && System.currentTimeMillis() < deadline) {
+                        Thread.sleep(5L);
+                    }
+                    throw new InterruptedIOException(request.isCancelled() ? "Request aborted" : "Not cancelled");
+                });
+        CompletableFuture<String> executing = CompletableFuture.supplyAsync(() -> {
+            try {
+                return apiClient.executeRequest("http://slow.example.com", "GET");
+            } catch (IOException | URISyntaxException e) {
+                throw new CompletionException(e);
+            }
+        });
+        Thread.sleep(50L);
+
+        apiClient.abort();
+
+        assertThatThrownBy(() -> executing.get(1, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(InterruptedIOException.class)
+                .hasMessageContaining("Request aborted");
+    }
+
+    @Test
+    void abort_whileWaitingForCoalescedRequestOfAnotherClient_stopsWaiting() throws Exception {
+        Map<String, String> props = Map.of("http.request.coalescing", "true");
+        HttpApiClient leaderClient = new HttpApiClient(new DummyConfig(props));
+        leaderClient.setHttpClient(mockHttpClient);
+        HttpApiClient followerClient = new HttpApiClient(new DummyConfig(props));
+        followerClient.setHttpClient(mock(CloseableHttpClient.class));
+        CountDownLatch release = new CountDownLatch(1);
+        when(mockResponse.getCode()).thenReturn(HttpStatus.SC_OK);
+        when(mockResponse.getEntity()).thenReturn(new StringEntity("shared"));
+        when(mockHttpClient.execute(any(HttpGet.class), any(HttpClientResponseHandler.class)))
+                .thenAnswer(invocation -> {
+                    release.await(5, TimeUnit.SECONDS);
+                    HttpClientResponseHandler<String> handler = invocation.getArgument(1);
+                    return handler.handleResponse(mockResponse);
+                });
+        CompletableFuture<String> leading = executeAsync(leaderClient, "http://shared.example.com");
+        Thread.sleep(50L);
+        CompletableFuture<String> following = executeAsync(followerClient, "http://shared.example.com");
+        Thread.sleep(50L);
+
+        followerClient.abort();
+
+        assertThatThrownBy(() -> following.get(1, TimeUnit.SECONDS)).hasCauseInstanceOf(InterruptedIOException.class);
+        release.countDown();
+        assertThat(leading.get(5, TimeUnit.SECONDS)).isEqualTo("shared");
+    }
+
+    private static CompletableFuture<String> executeAsync(HttpApiClient client, String uri) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return client.executeRequest(uri, "GET");
+            } catch (IOException | URISyntaxException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    @Test
+    void prewarm_withConfiguredConnections_opensThemUpFront() throws Exception {
+        try (ServerSocket server = new ServerSocket(0, 10, InetAddress.getLoopbackAddress())) {
+            AtomicInteger accepted = new AtomicInteger();
+            Thread acceptor = new Thread(() -> {
+                List<Socket> sockets = new ArrayList<>();
+                try {
+                    while (true) {
+                        sockets.add(server.accept());
+                        accepted.incrementAndGet();
+                    }
+                } catch (IOException ignored) {
+                    sockets.forEach(socket -> {
+                        try {
+                            socket.close();
+                        } catch (IOException e) {
+                            // closing anyway
+                        }
+                    });
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+            HttpApiClient warmApiClient = new HttpApiClient(new DummyConfig(Map.of("http.prewarm.connections", "3")));
+
+            warmApiClient.prewarm("http://127.0.0.1:" + server.getLocalPort() + "/items");
+
+            long deadline = System.currentTimeMillis() + 5000L;
+            while (accepted.get() < 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5L);
+            }
+            assertThat(accepted.get()).isEqualTo(3);
+            warmApiClient.close();
+        }
+    }
+
+    @Test
+    void executeRangeRequest_withWeakEtag_sendsNoIfRange() throws Exception {
+        when(mockResponse.getCode()).thenReturn(HttpStatus.SC_PARTIAL_CONTENT);
+        when(mockResponse.getFirstHeader(HttpHeaders.ETAG)).thenReturn(new BasicHeader(HttpHeaders.ETAG, "W/\"v1\""));
+        when(mockResponse.getFirstHeader(HttpHeaders.CONTENT_RANGE)).thenReturn(new BasicHeader(HttpHeaders.CONTENT_RANGE, "bytes 0-1/2"));
+        when(mockResponse.getEntity()).thenReturn(new StringEntity("a\n"));
+        when(mockHttpClient.execute(any(HttpGet.class), any(HttpClientResponseHandler.class)))
+                .thenAnswer(invocation -> {
+                    HttpClientResponseHandler<FileChunk> handler = invocation.getArgument(1);
+                    return handler.handleResponse(mockResponse);
+                });
+
+        FileChunk chunk = apiClient.executeRangeRequest("http://example.com/file", 0L, 100L, "W/\"v1\"");
+
+        ArgumentCaptor<HttpGet> request = ArgumentCaptor.forClass(HttpGet.class);
+        verify(mockHttpClient).execute(request.capture(), any(HttpClientResponseHandler.class));
+        assertThat(request.getValue().containsHeader(HttpHeaders.IF_RANGE)).isFalse();
+        assertThat(chunk.isReplaced()).isFalse();
+        assertThat(chunk.getLines()).containsExactly("a");
+    }
+
+    @Test
+    void rangeResponseHandler_withUnsatisfiableRangeBeyondTruncatedFile_reportsReplaced() throws Exception {
+        BasicClassicHttpResponse response = new BasicClassicHttpResponse(HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */10");
+
+        FileChunk truncated = new HttpApiClient.RangeResponseHandler(50L, false, "example.com", null).handleResponse(response);
+        FileChunk unchanged = new HttpApiClient.RangeResponseHandler(10L, false, "example.com", null).handleResponse(response);
+
+        assertThat(truncated.isReplaced()).isTrue();
+        assertThat(unchanged.isReplaced()).isFalse();
+        assertThat(unchanged.isEndOfFile()).isTrue();
+    }
+
     @Test
     void close_withApiClient_closesHttpClient() throws IOException {
         apiClient.close();
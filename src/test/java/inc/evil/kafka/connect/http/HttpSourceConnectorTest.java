@@ -1,15 +1,25 @@
 package inc.evil.kafka.connect.http;
 
 import org.apache.kafka.common.config.ConfigDef;
+import org.apache.kafka.connect.connector.ConnectorContext;
 import org.apache.kafka.connect.connector.Task;
+import org.apache.kafka.connect.source.ConnectorTransactionBoundaries;
+import org.apache.kafka.connect.source.ExactlyOnceSupport;
 import org.junit.jupiter.api.Test;
 import inc.evil.kafka.connect.http.config.HttpSourceConfig;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class HttpSourceConnectorTest {
 
@@ -54,5 +64,109 @@ public class HttpSourceConnectorTest {
         }
     }
 
+    @Test
+    void refreshEndpoints_withChangedIndex_requestsReconfigurationOnlyOnChange() throws Exception {
+        ConnectorContext context = mock(ConnectorContext.class);
+        HttpApiClient apiClient = mock(HttpApiClient.class);
+        Map<String, String> configProps = new HashMap<>();
+        configProps.put("http.discovery.url", "http://127.0.0.1:1/tenants");
+        configProps.put("http.discovery.pointer", "/tenants");
+        configProps.put("http.discovery.url.field", "url");
+        configProps.put("topic", "test-topic");
+        connector.initialize(context);
+        connector.setApiClient(apiClient);
+        when(apiClient.executeRequest(eq("http://127.0.0.1:1/tenants"), any()))
+                .thenReturn("{\"tenants\":[{\"url\":\"/t/1\"},{\"url\":\"http://b.com/t/2\"}]}")
+                .thenReturn("{\"tenants\":[{\"url\":\"http://b.com/t/2\"},{\"url\":\"/t/1\"}]}")
+                .thenReturn("{\"tenants\":[{\"url\":\"/t/1\"}]}");
+
+        connector.start(configProps);
+        List<Map<String, String>> taskConfigs = connector.taskConfigs(2);
+        boolean reordered = connector.refreshEndpoints();
+        boolean removed = connector.refreshEndpoints();
+
+        verify(apiClient, times(3)).executeRequest(eq("http://127.0.0.1:1/tenants"), any());
+        assertThat(taskConfigs).extracting(taskConfig -> taskConfig.get("http.urls"))
+                .containsExactly("http://127.0.0.1:1/t/1", "http://b.com/t/2");
+        assertThat(reordered).isFalse();
+        assertThat(removed).isTrue();
+        assertThat(connector.taskConfigs(2)).hasSize(1);
+        verify(context, times(1)).requestTaskReconfiguration();
+        connector.stop();
+    }
+
+    @Test
+    void refreshEndpoints_afterFailedFirstDiscovery_requestsReconfiguration() throws Exception {
+        ConnectorContext context = mock(ConnectorContext.class);
+        HttpApiClient apiClient = mock(HttpApiClient.class);
+        Map<String, String> configProps = new HashMap<>();
+        configProps.put("http.discovery.url", "http://127.0.0.1:1/tenants");
+        configProps.put("http.discovery.pointer", "/tenants");
+        configProps.put("http.discovery.url.field", "url");
+        configProps.put("topic", "test-topic");
+        connector.initialize(context);
+        connector.setApiClient(apiClient);
+        when(apiClient.executeRequest(eq("http://127.0.0.1:1/tenants"), any()))
+                .thenThrow(new IOException("Connection refused"))
+                .thenReturn("{\"tenants\":[{\"url\":\"/t/1\"}]}");
+
+        connector.start(configProps);
+        List<Map<String, String>> fallbackConfigs = connector.taskConfigs(2);
+        boolean discovered = connector.refreshEndpoints();
+
+        assertThat(fallbackConfigs).allSatisfy(taskConfig -> assertThat(taskConfig).doesNotContainKey("http.urls"));
+        assertThat(discovered).isTrue();
+        verify(context, times(1)).requestTaskReconfiguration();
+        assertThat(connector.taskConfigs(2)).extracting(taskConfig -> taskConfig.get("http.urls"))
+                .containsExactly("http://127.0.0.1:1/t/1");
+        connector.stop();
+    }
+
+    @Test
+    void exactlyOnceSupport_withAnyConfig_isSupportedWithConnectorDefinedBoundaries() {
+        Map<String, String> configProps = Map.of("http.url", "http://example.com", "topic", "test-topic");
+
+        assertThat(connector.exactlyOnceSupport(configProps)).isEqualTo(ExactlyOnceSupport.SUPPORTED);
+        assertThat(connector.canDefineTransactionBoundaries(configProps)).isEqualTo(ConnectorTransactionBoundaries.SUPPORTED);
+    }
+
+    @Test
+    void exactlyOnceSupport_withInMemoryDiffOrDedupState_isUnsupported() {
+        Map<String, String> diffProps = Map.of("http.diff.enabled", "true", "topic", "test-topic");
+        Map<String, String> dedupProps = Map.of("http.dedup.window.ms", "60000", "topic", "test-topic");
+
+        assertThat(connector.exactlyOnceSupport(diffProps)).isEqualTo(ExactlyOnceSupport.UNSUPPORTED);
+        assertThat(connector.exactlyOnceSupport(dedupProps)).isEqualTo(ExactlyOnceSupport.UNSUPPORTED);
+    }
+
+    @Test
+    void taskConfigs_withBatchIds_assignsEachTaskItsShareOfBatches() {
+        Map<String, String> configProps = new HashMap<>();
+        configProps.put("http.batch.ids", "1,2,3");
+        configProps.put("topic", "test-topic");
+
+        connector.start(configProps);
+        List<Map<String, String>> taskConfigs = connector.taskConfigs(2);
+
+        assertThat(taskConfigs).extracting(taskConfig -> taskConfig.get("http.batch.task.index")).containsExactly("0", "1");
+        assertThat(taskConfigs).allSatisfy(taskConfig -> assertThat(taskConfig).containsEntry("http.batch.task.count", "2"));
+    }
+
+    @Test
+    void taskConfigs_withUrlList_dividesUrlsAmongTasks() {
+        Map<String, String> configProps = new HashMap<>();
+        configProps.put("http.urls", "http://a.com,http://b.com,http://c.com");
+        configProps.put("topic", "test-topic");
+
+        connector.start(configProps);
+        List<Map<String, String>> taskConfigs = connector.taskConfigs(2);
+        List<Map<String, String>> cappedTaskConfigs = connector.taskConfigs(5);
+
+        assertThat(taskConfigs).extracting(taskConfig -> taskConfig.get("http.urls"))
+                .containsExactly("http://a.com,http://b.com", "http://c.com");
+        assertThat(taskConfigs).allSatisfy(taskConfig -> assertThat(taskConfig).containsEntry("topic", "test-topic"));
+        assertThat(cappedTaskConfigs).hasSize(3);
+    }
+
 }
 
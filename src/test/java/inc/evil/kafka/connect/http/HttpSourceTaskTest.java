@@ -4,23 +4,40 @@ import org.apache.kafka.connect.errors.ConnectException;
 import org.apache.kafka.connect.errors.RetriableException;
 import org.apache.kafka.connect.source.SourceRecord;
 import org.apache.kafka.connect.source.SourceTaskContext;
+import org.apache.kafka.connect.source.TransactionContext;
 import org.apache.kafka.connect.storage.OffsetStorageReader;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import inc.evil.kafka.connect.http.config.HttpSourceConfig;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.List;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 public class HttpSourceTaskTest {
 
+    @TempDir
+    Path tempDir;
+
     private HttpSourceTask task;
     private Map<String, String> baseProps;
 
@@ -112,6 +129,399 @@ public class HttpSourceTaskTest {
                 .hasMessageContaining("Unexpected error.");
     }
 
+    @Test
+    void poll_inFileMode_publishesLinesWithBytePositionOffsets() throws Exception {
+        FileChunk chunk = FileChunk.read(new ByteArrayInputStream("a\nb\npartial".getBytes(StandardCharsets.UTF_8)), 0L, 100L, "\"v1\"");
+        when(mockApiClient.executeRangeRequest(any(), eq(0L), anyLong(), isNull())).thenReturn(chunk);
+        startInFileMode(null);
+
+        List<SourceRecord> records = task.poll();
+
+        assertThat(records).extracting(SourceRecord::value).containsExactly("a", "b");
+        assertThat(records.get(1).sourceOffset().get("file_position")).isEqualTo(4L);
+        assertThat(records.get(1).sourceOffset().get("file_etag")).isEqualTo("\"v1\"");
+    }
+
+    @Test
+    void poll_inFileModeWithPersistedPosition_resumesFromCommittedByte() throws Exception {
+        FileChunk chunk = FileChunk.read(new ByteArrayInputStream("c\n".getBytes(StandardCharsets.UTF_8)), 4L, 6L, "\"v1\"");
+        when(mockApiClient.executeRangeRequest(any(), eq(4L), anyLong(), eq("\"v1\""))).thenReturn(chunk);
+        startInFileMode(Map.of("file_position", 4L, "file_etag", "\"v1\"", "last_polled_timestamp", 1L));
+
+        List<SourceRecord> records = task.poll();
+
+        assertThat(records).extracting(SourceRecord::value).containsExactly("c");
+        assertThat(records.get(0).sourceOffset().get("file_position")).isEqualTo(6L);
+    }
+
+    @Test
+    void poll_inFileModeAfterEndOfFile_readsAppendedBytesWithoutIfRange() throws Exception {
+        FileChunk whole = FileChunk.read(new ByteArrayInputStream("a\n".getBytes(StandardCharsets.UTF_8)), 0L, 2L, "\"v1\"");
+        FileChunk appended = FileChunk.read(new ByteArrayInputStream("\nb\n".getBytes(StandardCharsets.UTF_8)), 1L, 4L, "\"v2\"");
+        when(mockApiClient.executeRangeRequest(any(), eq(0L), anyLong(), isNull())).thenReturn(whole);
+        when(mockApiClient.executeRangeRequest(any(), eq(1L), anyLong(), isNull())).thenReturn(appended);
+        startInFileMode(null);
+
+        List<SourceRecord> first = task.poll();
+        task.setLastPollTime(0L);
+        List<SourceRecord> second = task.poll();
+
+        assertThat(first).extracting(SourceRecord::value).containsExactly("a");
+        assertThat(first.get(0).sourceOffset().get("file_in_progress")).isEqualTo(false);
+        assertThat(second).extracting(SourceRecord::value).containsExactly("b");
+        assertThat(second.get(0).sourceOffset().get("file_position")).isEqualTo(4L);
+    }
+
+    @Test
+    void poll_inFileModeRestartedAtEndOfFile_readsAppendedBytesWithoutIfRange() throws Exception {
+        FileChunk appended = FileChunk.read(new ByteArrayInputStream("\nb\n".getBytes(StandardCharsets.UTF_8)), 1L, 4L, "\"v2\"");
+        when(mockApiClient.executeRangeRequest(any(), eq(1L), anyLong(), isNull())).thenReturn(appended);
+        startInFileMode(Map.of("file_position", 2L, "file_etag", "\"v1\"", "file_in_progress", false, "last_polled_timestamp", 1L));
+
+        List<SourceRecord> records = task.poll();
+
+        assertThat(records).extracting(SourceRecord::value).containsExactly("b");
+        assertThat(records.get(0).sourceOffset().get("file_position")).isEqualTo(4L);
+        verify(mockApiClient, never()).executeRangeRequest(any(), eq(0L), anyLong(), any());
+    }
+
+    @Test
+    void poll_inFileModeAfterEndOfFileWithRegeneratedFile_readsItFromTheStart() throws Exception {
+        FileChunk regenerated = FileChunk.read(new ByteArrayInputStream("xy\nz\n".getBytes(StandardCharsets.UTF_8)), 1L, 6L, "\"v2\"");
+        FileChunk whole = FileChunk.read(new ByteArrayInputStream("axy\nz\n".getBytes(StandardCharsets.UTF_8)), 0L, 6L, "\"v2\"");
+        when(mockApiClient.executeRangeRequest(any(), eq(1L), anyLong(), isNull())).thenReturn(regenerated);
+        when(mockApiClient.executeRangeRequest(any(), eq(0L), anyLong(), isNull())).thenReturn(whole);
+        startInFileMode(Map.of("file_position", 2L, "file_etag", "\"v1\"", "file_in_progress", false, "last_polled_timestamp", 1L));
+
+        List<SourceRecord> check = task.poll();
+        List<SourceRecord> reread = task.poll();
+
+        assertThat(check).isEmpty();
+        assertThat(reread).extracting(SourceRecord::value).containsExactly("axy", "z");
+    }
+
+    @Test
+    void poll_inFileModeWithOversizedLine_resumesBeforeLineUntilLastChunk() throws Exception {
+        FileChunk chunk = FileChunk.read(new ByteArrayInputStream("0123456789\nab\n".getBytes(StandardCharsets.UTF_8)), 4L, 17L, "\"v1\"");
+        when(mockApiClient.executeRangeRequest(any(), eq(4L), anyLong(), eq("\"v1\""))).thenReturn(chunk);
+        Map<String, String> props = new HashMap<>(baseProps);
+        props.put("http.mode", "file");
+        props.put("http.oversize.threshold.bytes", "4");
+        when(mockOffsetStorageReader.offset(any())).thenReturn(Map.of("file_position", 4L, "file_etag", "\"v1\"", "last_polled_timestamp", 1L));
+        task.start(props);
+        task.setApiClient(mockApiClient);
+
+        List<SourceRecord> records = task.poll();
+
+        assertThat(records).extracting(SourceRecord::value).containsExactly("0123", "4567", "89", "ab");
+        assertThat(records).extracting(record -> (Object) record.sourceOffset().get("file_position")).containsExactly(4L, 4L, 15L, 18L);
+    }
+
+    private void startInFileMode(Map<String, Object> persistedOffset) {
+        Map<String, String> props = new HashMap<>(baseProps);
+        props.put("http.mode", "file");
+        when(mockOffsetStorageReader.offset(any())).thenReturn(persistedOffset);
+        task.start(props);
+        task.setApiClient(mockApiClient);
+    }
+
+    @Test
+    void poll_inDiffMode_publishesOnlyChangesAndTombstones() throws Exception {
+        Map<String, String> props = new HashMap<>(baseProps);
+        props.put("http.records.split", "true");
+        props.put("http.records.pointer", "/items");
+        props.put("http.records.key.field", "id");
+        props.put("http.diff.enabled", "true");
+        task.start(props);
+        task.setApiClient(mockApiClient);
+        when(mockApiClient.executeRequest(any(), any()))
+                .thenReturn("{\"items\":[{\"id\":\"a\",\"p\":1},{\"id\":\"b\",\"p\":1}]}")
+                .thenReturn("{\"items\":[{\"id\":\"a\",\"p\":2}]}");
+
+        task.setLastPollTime(0L);
+        List<SourceRecord> first = task.poll();
+        task.setLastPollTime(0L);
+        List<SourceRecord> second = task.poll();
+
+        assertThat(first).extracting(SourceRecord::key).containsExactly("a", "b");
+        assertThat(second).extracting(SourceRecord::key).containsExactly("a", "b");
+        assertThat(second.get(0).value()).isEqualTo("{\"id\":\"a\",\"p\":2}");
+        assertThat(second.get(1).value()).isNull();
+    }
+
+    @Test
+    void poll_inDiffModeAfterFailureFollowingSnapshot_publishesChangesAgain() throws Exception {
+        Path blocker = Files.createFile(tempDir.resolve("blocker"));
+        Map<String, String> props = new HashMap<>(baseProps);
+        props.put("http.records.split", "true");
+        props.put("http.records.pointer", "/items");
+        props.put("http.records.key.field", "id");
+        props.put("http.diff.enabled", "true");
+        props.put("http.oversize.threshold.bytes", "16");
+        props.put("http.oversize.strategy", "claim-check");
+        props.put("http.claim.check.dir", blocker.toString());
+        task.start(props);
+        task.setApiClient(mockApiClient);
+        when(mockApiClient.executeRequest(any(), any())).thenReturn("{\"items\":[{\"id\":\"a\",\"p\":\"large value\"},{\"id\":\"b\"}]}");
+
+        task.setLastPollTime(0L);
+        assertThatThrownBy(() -> task.poll()).isInstanceOf(RetriableException.class);
+        Files.delete(blocker);
+        task.setLastPollTime(0L);
+        List<SourceRecord> retried = task.poll();
+
+        assertThat(retried).extracting(SourceRecord::key).containsExactly("a", "b");
+    }
+
+    @Test
+    void poll_withDedupWindow_dropsRecordsPublishedByOverlappingPoll() throws Exception {
+        Map<String, String> props = new HashMap<>(baseProps);
+        props.put("http.records.split", "true");
+        props.put("http.records.key.field", "id");
+        props.put("http.dedup.window.ms", "3600000");
+        task.start(props);
+        task.setApiClient(mockApiClient);
+        when(mockApiClient.executeRequest(any(), any()))
+                .thenReturn("[{\"id\":\"a\"},{\"id\":\"b\"}]")
+                .thenReturn("[{\"id\":\"b\"},{\"id\":\"c\"}]");
+
+        task.setLastPollTime(0L);
+        List<SourceRecord> first = task.poll();
+        task.setLastPollTime(0L);
+        List<SourceRecord> second = task.poll();
+
+        assertThat(first).extracting(SourceRecord::key).containsExactly("a", "b");
+        assertThat(second).extracting(SourceRecord::key).containsExactly("c");
+    }
+
+    @Test
+    void poll_withDedupWindowAfterFailedPoll_publishesIdsAgain() throws Exception {
+        Path blocker = Files.createFile(tempDir.resolve("blocker"));
+        Map<String, String> props = new HashMap<>(baseProps);
+        props.put("http.records.split", "true");
+        props.put("http.records.key.field", "id");
+        props.put("http.dedup.window.ms", "3600000");
+        props.put("http.oversize.threshold.bytes", "16");
+        props.put("http.oversize.strategy", "claim-check");
+        props.put("http.claim.check.dir", blocker.toString());
+        task.start(props);
+        task.setApiClient(mockApiClient);
+        when(mockApiClient.executeRequest(any(), any())).thenReturn("[{\"id\":\"a\",\"p\":\"large value\"},{\"id\":\"b\"},{\"id\":\"b\"}]");
+
+        task.setLastPollTime(0L);
+        assertThatThrownBy(() -> task.poll()).isInstanceOf(RetriableException.class);
+        Files.delete(blocker);
+        task.setLastPollTime(0L);
+        List<SourceRecord> retried = task.poll();
+        task.setLastPollTime(0L);
+        List<SourceRecord> repeated = task.poll();
+
+        assertThat(retried).extracting(SourceRecord::key).containsExactly("a", "b");
+        assertThat(repeated).isEmpty();
+    }
+
+    @Test
+    void poll_withDedupWindowAndUrlList_keepsIdsOfEachEndpointApart() throws Exception {
+        Map<String, String> props = new HashMap<>(baseProps);
+        props.put("http.urls", "http://a.com,http://b.com");
+        props.put("http.records.split", "true");
+        props.put("http.records.key.field", "id");
+        props.put("http.dedup.window.ms", "3600000");
+        task.start(props);
+        task.setApiClient(mockApiClient);
+        when(mockApiClient.executeRequest(eq("http://a.com"), any())).thenReturn("[{\"id\":1,\"tenant\":\"a\"}]");
+        when(mockApiClient.executeRequest(eq("http://b.com"), any())).thenReturn("[{\"id\":1,\"tenant\":\"b\"}]");
+
+        List<SourceRecord> records = task.poll();
+
+        assertThat(records).extracting(SourceRecord::value).containsExactly("{\"id\":1,\"tenant\":\"a\"}", "{\"id\":1,\"tenant\":\"b\"}");
+        task.stop();
+    }
+
+    @Test
+    void poll_pastInFlightHighWaterMark_pausesUntilRecordIsCommitted() throws Exception {
+        Map<String, String> props = new HashMap<>(baseProps);
+        props.put("http.inflight.max.records", "1");
+        task.start(props);
+        task.setApiClient(mockApiClient);
+        when(mockApiClient.executeRequest(any(), any())).thenReturn("payload");
+
+        task.setLastPollTime(0L);
+        List<SourceRecord> first = task.poll();
+        task.setLastPollTime(0L);
+        List<SourceRecord> paused = task.poll();
+        task.commitRecord(first.get(0), null);
+        task.setLastPollTime(0L);
+        List<SourceRecord> resumed = task.poll();
+
+        assertThat(first).hasSize(1);
+        assertThat(paused).isEmpty();
+        assertThat(resumed).hasSize(1);
+        verify(mockApiClient, times(2)).executeRequest(any(), any());
+    }
+
+    @Test
+    void poll_withUrlList_fetchesEndpointsConcurrentlyIntoOwnPartitions() throws Exception {
+        Map<String, String> props = new HashMap<>(baseProps);
+        props.put("http.urls", "http://a.com,http://b.com,http://c.com");
+        task.start(props);
+        task.setApiClient(mockApiClient);
+        CountDownLatch allStarted = new CountDownLatch(2);
+        when(mockApiClient.executeRequest(eq("http://a.com"), any())).thenAnswer(invocation -> {
+            allStarted.countDown();
+            allStarted.await(5, TimeUnit.SECONDS);
+            return "from-a";
+        });
+        when(mockApiClient.executeRequest(eq("http://b.com"), any())).thenAnswer(invocation -> {
+            allStarted.countDown();
+            allStarted.await(5, TimeUnit.SECONDS);
+            return "from-b";
+        });
+        when(mockApiClient.executeRequest(eq("http://c.com"), any())).thenThrow(new IOException("unreachable"));
+
+        List<SourceRecord> records = task.poll();
+
+        assertThat(allStarted.getCount()).isZero();
+        assertThat(records).extracting(SourceRecord::value).containsExactly("from-a", "from-b");
+        assertThat(records.get(0).sourcePartition()).isEqualTo(Map.of("url", "http://a.com"));
+        assertThat(records.get(1).sourcePartition()).isEqualTo(Map.of("url", "http://b.com"));
+        task.stop();
+    }
+
+    @Test
+    void poll_withUrlListAndFailingEndpoints_keepsRecordsOfHealthyEndpoint() throws Exception {
+        Map<String, String> props = new HashMap<>(baseProps);
+        props.put("http.urls", "http://a.com,http://b.com,http://c.com");
+        props.put("http.records.split", "true");
+        props.put("http.records.key.field", "id");
+        task.start(props);
+        task.setApiClient(mockApiClient);
+        when(mockApiClient.executeRequest(eq("http://a.com"), any())).thenReturn("[{\"id\":\"1\"}]");
+        when(mockApiClient.executeRequest(eq("http://b.com"), any())).thenThrow(new HttpApiClient.HttpStatusException(404));
+        when(mockApiClient.executeRequest(eq("http://c.com"), any())).thenReturn("not json");
+
+        List<SourceRecord> records = task.poll();
+
+        assertThat(records).extracting(SourceRecord::key).containsExactly("1");
+        assertThat(records.get(0).sourcePartition()).isEqualTo(Map.of("url", "http://a.com"));
+        task.stop();
+    }
+
+    @Test
+    void poll_withBatchIds_fetchesPendingBatchesIntoOwnPartitions() throws Exception {
+        Map<String, String> props = new HashMap<>(baseProps);
+        props.put("http.method", "POST");
+        props.put("http.batch.ids", "1,2,3,4,5");
+        props.put("http.batch.size", "2");
+        props.put("http.batch.param", "ids");
+        props.put("http.request.body", "{\"ids\":[${ids}]}");
+        Map<String, String> completedBatch = Map.of("url", "example.com", "batch", new IdBatch(List.of("1", "2")).getKey());
+        doReturn(Map.of(completedBatch, Map.of("last_polled_timestamp", 12345L))).when(mockOffsetStorageReader).offsets(any());
+        task.start(props);
+        task.setApiClient(mockApiClient);
+        when(mockApiClient.executeRequest(eq("example.com?ids=3,4"), eq("POST"), eq("{\"ids\":[3,4]}"))).thenReturn("three-four");
+        when(mockApiClient.executeRequest(eq("example.com?ids=5"), eq("POST"), eq("{\"ids\":[5]}"))).thenReturn("five");
+
+        List<SourceRecord> records = task.poll();
+
+        assertThat(records).extracting(SourceRecord::value).containsExactly("three-four", "five");
+        assertThat(records.get(1).sourcePartition()).isEqualTo(Map.of("url", "example.com", "batch", new IdBatch(List.of("5")).getKey()));
+        assertThat(task.getLastPollTime()).isEqualTo(12345L);
+        verify(mockApiClient, never()).executeRequest(eq("example.com?ids=1,2"), any(), any());
+        task.stop();
+    }
+
+    @Test
+    void poll_withConnectorDefinedTransactions_commitsAfterEachBatch() throws Exception {
+        TransactionContext transactionContext = mock(TransactionContext.class);
+        when(mockContext.transactionContext()).thenReturn(transactionContext);
+        Map<String, String> props = new HashMap<>(baseProps);
+        props.put("http.batch.ids", "1,2,3");
+        props.put("http.batch.size", "2");
+        props.put("http.batch.param", "ids");
+        props.put("http.records.split", "true");
+        task.start(props);
+        task.setApiClient(mockApiClient);
+        when(mockApiClient.executeRequest(eq("example.com?ids=1,2"), any())).thenReturn("[{\"id\":1},{\"id\":2}]");
+        when(mockApiClient.executeRequest(eq("example.com?ids=3"), any())).thenReturn("[{\"id\":3}]");
+
+        List<SourceRecord> records = task.poll();
+
+        assertThat(records).extracting(SourceRecord::value).containsExactly("{\"id\":1}", "{\"id\":2}", "{\"id\":3}");
+        verify(transactionContext).commitTransaction(records.get(1));
+        verify(transactionContext).commitTransaction(records.get(2));
+        verifyNoMoreInteractions(transactionContext);
+        task.stop();
+    }
+
+    @Test
+    void poll_withOversizedResponse_publishesChunksInOrder() throws Exception {
+        Map<String, String> props = new HashMap<>(baseProps);
+        props.put("http.oversize.threshold.bytes", "4");
+        task.start(props);
+        task.setApiClient(mockApiClient);
+        when(mockApiClient.executeRequest(anyString(), anyString())).thenReturn("0123456789");
+
+        List<SourceRecord> records = task.poll();
+
+        assertThat(records).extracting(SourceRecord::value).containsExactly("0123", "4567", "89");
+        assertThat(records).extracting(SourceRecord::key).containsOnly(records.get(0).key());
+    }
+
+    @Test
+    void start_withClaimCheckWithoutDirectory_throwsConnectException() {
+        Map<String, String> props = new HashMap<>(baseProps);
+        props.put("http.oversize.threshold.bytes", "1000");
+        props.put("http.oversize.strategy", "claim-check");
+
+        assertThatThrownBy(() -> task.start(props)).isInstanceOf(ConnectException.class);
+    }
+
+    @Test
+    void start_onWorkerWithoutTransactionContext_startsWithoutTransactions() throws Exception {
+        when(mockContext.transactionContext()).thenThrow(new NoSuchMethodError("transactionContext"));
+
+        task.start(baseProps);
+        task.setApiClient(mockApiClient);
+        when(mockApiClient.executeRequest(anyString(), anyString())).thenReturn("payload");
+
+        assertThat(task.poll()).extracting(SourceRecord::value).containsExactly("payload");
+    }
+
+    @Test
+    void stop_duringPollWait_endsWaitImmediately() throws Exception {
+        task.setLastPollTime(System.currentTimeMillis());
+        CompletableFuture<List<SourceRecord>> polling = CompletableFuture.supplyAsync(() -> {
+            try {
+                return task.poll();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(50L);
+
+        long stoppedAt = System.nanoTime();
+        task.stop();
+        List<SourceRecord> records = polling.get(5, TimeUnit.SECONDS);
+
+        assertThat(records).isEmpty();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stoppedAt)).isLessThan(1000L);
+    }
+
+    @Test
+    void poll_withRequestCancelledByStop_returnsEmptyList() throws Exception {
+        task.setLastPollTime(0L);
+        when(mockApiClient.executeRequest(any(), any())).thenAnswer(invocation -> {
+            task.stop();
+            throw new InterruptedIOException("Request aborted");
+        });
+
+        List<SourceRecord> records = task.poll();
+
+        assertThat(records).isEmpty();
+        verify(mockApiClient).close();
+    }
+
     @Test
     void stop_withTask_closesApiClient() throws IOException {
         task.stop();
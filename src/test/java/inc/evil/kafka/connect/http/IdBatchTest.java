@@ -0,0 +1,50 @@
+package inc.evil.kafka.connect.http;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IdBatchTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void readIds_withConfiguredIdsAndFile_skipsBlankLinesCommentsAndDuplicates() throws Exception {
+        Path file = tempDir.resolve("ids.txt");
+        Files.write(file, List.of("# tenants", "b", "", "  c ", "a"), StandardCharsets.UTF_8);
+
+        assertThat(IdBatch.readIds(List.of("a", "b"), file.toString())).containsExactly("a", "b", "c");
+    }
+
+    @Test
+    void chunk_withRemainder_returnsLastBatchShorter() {
+        List<IdBatch> batches = IdBatch.chunk(List.of("1", "2", "3", "4", "5"), 2);
+
+        assertThat(batches).extracting(IdBatch::getIds)
+                .containsExactly(List.of("1", "2"), List.of("3", "4"), List.of("5"));
+        assertThat(batches.get(0).getKey()).isEqualTo(new IdBatch(List.of("1", "2")).getKey()).isNotEqualTo(batches.get(1).getKey());
+    }
+
+    @Test
+    void uri_withExistingQuery_appendsEncodedIds() {
+        IdBatch batch = new IdBatch(List.of("a b", "c&d"));
+
+        assertThat(batch.uri("http://x.com/items?v=1", "ids")).isEqualTo("http://x.com/items?v=1&ids=a+b,c%26d");
+        assertThat(batch.uri("http://x.com/items", "")).isEqualTo("http://x.com/items");
+    }
+
+    @Test
+    void body_withPlaceholders_substitutesIds() {
+        IdBatch batch = new IdBatch(List.of("1", "x\"y"));
+
+        assertThat(batch.body("{\"ids\":${ids.json},\"csv\":\"${ids}\"}")).isEqualTo("{\"ids\":[\"1\",\"x\\\"y\"],\"csv\":\"1,x\"y\"}");
+        assertThat(batch.body("")).isNull();
+    }
+}
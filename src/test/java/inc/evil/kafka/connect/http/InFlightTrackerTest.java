@@ -0,0 +1,56 @@
+package inc.evil.kafka.connect.http;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.source.SourceRecord;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InFlightTrackerTest {
+
+    @Test
+    void awaitCapacity_belowHighWaterMarks_returnsTrue() throws InterruptedException {
+        InFlightTracker tracker = new InFlightTracker(3L, 100L);
+        tracker.add(Arrays.asList(record("a"), record("b")));
+
+        assertThat(tracker.awaitCapacity(0L)).isTrue();
+        assertThat(tracker.getRecords()).isEqualTo(2L);
+        assertThat(tracker.getBytes()).isEqualTo(4L);
+    }
+
+    @Test
+    void awaitCapacity_pastByteHighWaterMark_returnsFalseAfterTimeout() throws InterruptedException {
+        InFlightTracker tracker = new InFlightTracker(0L, 10L);
+        tracker.add(Collections.singletonList(record("0123456789")));
+
+        assertThat(tracker.awaitCapacity(10L)).isFalse();
+    }
+
+    @Test
+    void awaitCapacity_withRecordReleasedWhileWaiting_returnsTrue() throws Exception {
+        InFlightTracker tracker = new InFlightTracker(1L, 0L);
+        SourceRecord pending = record("a");
+        tracker.add(Collections.singletonList(pending));
+
+        CompletableFuture<Boolean> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return tracker.awaitCapacity(10_000L);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        tracker.release(pending);
+
+        assertThat(waiting.get()).isTrue();
+        assertThat(tracker.getRecords()).isZero();
+        assertThat(tracker.getBytes()).isZero();
+    }
+
+    private static SourceRecord record(String value) {
+        return new SourceRecord(null, null, "topic", Schema.STRING_SCHEMA, "k", Schema.STRING_SCHEMA, value);
+    }
+}
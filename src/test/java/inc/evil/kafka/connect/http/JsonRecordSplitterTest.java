@@ -0,0 +1,48 @@
+package inc.evil.kafka.connect.http;
+
+import org.apache.kafka.connect.errors.ConnectException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class JsonRecordSplitterTest {
+
+    @Test
+    void forEach_withNestedPointer_visitsArrayElements() throws IOException {
+        JsonRecordSplitter splitter = new JsonRecordSplitter("/data/items", "id");
+        List<String> keys = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+
+        splitter.forEach("{\"meta\":{\"items\":[0]},\"data\":{\"items\":[{\"id\":1,\"n\":\"a\"},{\"id\":2,\"n\":\"b\"}]}}",
+                (element, json) -> {
+                    keys.add(splitter.keyOf(element));
+                    values.add(json);
+                });
+
+        assertThat(keys).containsExactly("1", "2");
+        assertThat(values).containsExactly("{\"id\":1,\"n\":\"a\"}", "{\"id\":2,\"n\":\"b\"}");
+    }
+
+    @Test
+    void forEach_withTopLevelArrayAndPointerKey_visitsElements() throws IOException {
+        JsonRecordSplitter splitter = new JsonRecordSplitter("", "/meta/id");
+        List<String> keys = new ArrayList<>();
+
+        splitter.forEach("[{\"meta\":{\"id\":\"x\"}},{\"other\":true}]", (element, json) -> keys.add(splitter.keyOf(element)));
+
+        assertThat(keys).containsExactly("x", null);
+    }
+
+    @Test
+    void forEach_withMissingArray_throwsConnectException() {
+        JsonRecordSplitter splitter = new JsonRecordSplitter("/items", "");
+
+        assertThatThrownBy(() -> splitter.forEach("{\"items\":{}}", (element, json) -> { }))
+                .isInstanceOf(ConnectException.class);
+    }
+}
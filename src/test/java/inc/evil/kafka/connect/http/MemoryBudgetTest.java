@@ -0,0 +1,86 @@
+package inc.evil.kafka.connect.http;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MemoryBudgetTest {
+
+    private final MemoryBudget budget = MemoryBudget.getInstance();
+
+    @AfterEach
+    public void tearDown() {
+        budget.setLimit(0L);
+    }
+
+    @Test
+    void reserve_overBudget_waitsUntilAnotherHolderReleases() throws Exception {
+        budget.setLimit(100L);
+        MemoryBudget.Reservation first = budget.newReservation(10_000L);
+        MemoryBudget.Reservation second = budget.newReservation(10_000L);
+        first.reserve(80L);
+
+        CompletableFuture<Void> waiting = CompletableFuture.runAsync(() -> {
+            try {
+                second.reserve(50L);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+        Thread.sleep(50L);
+        boolean blocked = !waiting.isDone();
+        first.release();
+        waiting.get(5, TimeUnit.SECONDS);
+
+        assertThat(blocked).isTrue();
+        assertThat(budget.getReserved()).isEqualTo(50L);
+        second.release();
+        assertThat(budget.getReserved()).isZero();
+    }
+
+    @Test
+    void reserve_overBudgetUntilTimeout_throwsIOException() throws IOException {
+        budget.setLimit(100L);
+        MemoryBudget.Reservation first = budget.newReservation(10L);
+        first.reserve(100L);
+
+        assertThatThrownBy(() -> budget.newReservation(10L).reserve(1L))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("memory budget");
+        first.release();
+    }
+
+    @Test
+    void reserve_largerThanBudgetWithNothingReserved_isGranted() throws IOException {
+        budget.setLimit(100L);
+        MemoryBudget.Reservation reservation = budget.newReservation(10L);
+
+        reservation.reserve(1000L);
+
+        assertThat(reservation.getHeld()).isEqualTo(1000L);
+        reservation.release();
+    }
+
+    @Test
+    void track_withStreamedBytes_reservesWhatIsRead() throws IOException {
+        budget.setLimit(1024L * 1024);
+        MemoryBudget.Reservation reservation = budget.newReservation(10L);
+
+        try (InputStream in = reservation.track(new ByteArrayInputStream(new byte[100_000]), -1L)) {
+            assertThat(in.readAllBytes()).hasSize(100_000);
+        }
+
+        assertThat(reservation.getHeld()).isGreaterThanOrEqualTo(100_000L);
+        reservation.release();
+        assertThat(budget.getReserved()).isZero();
+    }
+}
@@ -0,0 +1,70 @@
+package inc.evil.kafka.connect.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MirrorSelectorTest {
+
+    private final MirrorSelector selector = new MirrorSelector(List.of("http://a.com", "http://b.com", "http://c.com"), 10000L);
+
+    @Test
+    void ranked_withRecordedLatencies_ordersByAverageLatency() {
+        selector.recordSuccess("http://a.com", 300L);
+        selector.recordSuccess("http://b.com", 50L);
+        selector.recordFailure("http://c.com");
+
+        assertThat(selector.ranked()).containsExactly("http://b.com", "http://a.com", "http://c.com");
+    }
+
+    @Test
+    void ranked_withUnprobedMirror_ranksItFirst() {
+        selector.recordSuccess("http://a.com", 20L);
+        selector.recordSuccess("http://b.com", 30L);
+
+        assertThat(selector.ranked().get(0)).isEqualTo("http://c.com");
+    }
+
+    @Test
+    void hedgeDelayMs_withTooFewSamples_returnsNegative() {
+        selector.recordSuccess("http://a.com", 20L);
+
+        assertThat(selector.hedgeDelayMs(95)).isNegative();
+    }
+
+    @Test
+    void hedgeDelayMs_withEnoughSamples_returnsPercentile() {
+        for (long latency = 1; latency <= 100; latency++) {
+            selector.recordSuccess("http://a.com", latency);
+        }
+
+        assertThat(selector.hedgeDelayMs(95)).isEqualTo(95L);
+    }
+
+    @Test
+    void rewrite_withPrimaryUrl_replacesBaseUrl() {
+        assertThat(selector.routes("http://a.com/items")).isTrue();
+        assertThat(selector.rewrite("http://a.com/items", "http://b.com")).isEqualTo("http://b.com/items");
+    }
+
+    @Test
+    void routes_withLookAlikeHost_returnsFalse() {
+        assertThat(selector.routes("http://a.com")).isTrue();
+        assertThat(selector.routes("http://a.com?page=1")).isTrue();
+        assertThat(selector.routes("http://a.com#top")).isTrue();
+        assertThat(selector.routes("http://a.com.evil.example/items")).isFalse();
+        assertThat(selector.routes("http://a.comx/items")).isFalse();
+    }
+
+    @Test
+    void ranked_withFailedMirrorAfterPenaltyDecays_ranksItAgain() {
+        selector.recordSuccess("http://a.com", 300L, 0L);
+        selector.recordSuccess("http://b.com", 200L, 0L);
+        selector.recordFailure("http://c.com", 0L);
+
+        assertThat(selector.ranked(1000L).get(2)).isEqualTo("http://c.com");
+        assertThat(selector.ranked(300000L).get(0)).isEqualTo("http://c.com");
+    }
+}
@@ -0,0 +1,107 @@
+package inc.evil.kafka.connect.http;
+
+import inc.evil.kafka.connect.http.config.HttpSourceConfig;
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.core5.http.io.HttpClientResponseHandler;
+import org.apache.kafka.connect.errors.ConnectException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OAuth2TokenProviderTest {
+
+    private final CloseableHttpClient mockHttpClient = mock(CloseableHttpClient.class);
+
+    private OAuth2TokenProvider tokenProvider;
+
+    @BeforeEach
+    public void setUp() {
+        HttpSourceConfig config = new HttpSourceConfig(Map.of(
+                "topic", "test-topic",
+                "http.auth.oauth2.token.url", "http://auth.example.com/token",
+                "http.auth.oauth2.client.id", "provider-test-client",
+                "http.auth.oauth2.client.secret", "secret"
+        ));
+        tokenProvider = OAuth2TokenProvider.acquire(config);
+        tokenProvider.setHttpClient(mockHttpClient);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        tokenProvider.close();
+    }
+
+    @Test
+    void getAccessToken_withCachedToken_fetchesTokenOnlyOnce() throws IOException {
+        when(mockHttpClient.execute(any(HttpPost.class), any(HttpClientResponseHandler.class)))
+                .thenReturn("{\"access_token\":\"abc\",\"expires_in\":3600}");
+
+        assertThat(tokenProvider.getAccessToken()).isEqualTo("abc");
+        assertThat(tokenProvider.getAccessToken()).isEqualTo("abc");
+
+        verify(mockHttpClient, times(1)).execute(any(HttpPost.class), any(HttpClientResponseHandler.class));
+    }
+
+    @Test
+    void refreshIfCurrent_withAlreadyReplacedToken_returnsNewerTokenWithoutFetching() throws IOException {
+        when(mockHttpClient.execute(any(HttpPost.class), any(HttpClientResponseHandler.class)))
+                .thenReturn("{\"access_token\":\"abc\",\"expires_in\":3600}")
+                .thenReturn("{\"access_token\":\"def\",\"expires_in\":3600}");
+
+        tokenProvider.getAccessToken();
+        String refreshed = tokenProvider.refreshIfCurrent("abc");
+        String reused = tokenProvider.refreshIfCurrent("abc");
+
+        assertThat(refreshed).isEqualTo("def");
+        assertThat(reused).isEqualTo("def");
+        verify(mockHttpClient, times(2)).execute(any(HttpPost.class), any(HttpClientResponseHandler.class));
+    }
+
+    @Test
+    void refreshDelayMs_withTokenShorterThanMargin_refreshesAtHalfLifetime() {
+        assertThat(OAuth2TokenProvider.refreshDelayMs(30_000L, 60_000L)).isEqualTo(15_000L);
+        assertThat(OAuth2TokenProvider.refreshDelayMs(3_600_000L, 60_000L)).isEqualTo(3_540_000L);
+        assertThat(OAuth2TokenProvider.refreshDelayMs(1_000L, 60_000L)).isEqualTo(1_000L);
+    }
+
+    @Test
+    void close_calledTwice_doesNotReleaseNewerProviderForSameCredentials() throws IOException {
+        HttpSourceConfig config = new HttpSourceConfig(Map.of(
+                "topic", "test-topic",
+                "http.auth.oauth2.token.url", "http://auth.example.com/token",
+                "http.auth.oauth2.client.id", "close-test-client",
+                "http.auth.oauth2.client.secret", "secret"
+        ));
+        OAuth2TokenProvider first = OAuth2TokenProvider.acquire(config);
+        first.close();
+        OAuth2TokenProvider second = OAuth2TokenProvider.acquire(config);
+        first.close();
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(OAuth2TokenProvider.acquire(config)).isSameAs(second);
+        second.close();
+        second.close();
+    }
+
+    @Test
+    void getAccessToken_withResponseMissingToken_throwsConnectException() throws IOException {
+        when(mockHttpClient.execute(any(HttpPost.class), any(HttpClientResponseHandler.class)))
+                .thenReturn("{\"error\":\"invalid_client\"}");
+
+        assertThatThrownBy(() -> tokenProvider.getAccessToken())
+                .isInstanceOf(ConnectException.class)
+                .hasMessageContaining("access_token");
+    }
+}
@@ -0,0 +1,107 @@
+package inc.evil.kafka.connect.http;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.source.SourceRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OversizeHandlerTest {
+
+    private static final Map<String, Object> RESUME_OFFSET = Map.of("last_polled_timestamp", 0L);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void apply_withoutOversizedValues_returnsSameList() throws Exception {
+        List<SourceRecord> records = List.of(record("small"), record(null));
+
+        assertThat(new OversizeHandler(8L, "chunk", null).apply(records, RESUME_OFFSET)).isSameAs(records);
+    }
+
+    @Test
+    void apply_withChunkStrategy_splitsOnCodePointsWithReassemblyHeaders() throws Exception {
+        String value = "abcdéé😀x";
+
+        List<SourceRecord> chunks = new OversizeHandler(5L, "chunk", null).apply(List.of(record("ok"), record(value)), RESUME_OFFSET);
+
+        assertThat(chunks).hasSize(4);
+        assertThat(chunks.get(0).value()).isEqualTo("ok");
+        List<SourceRecord> pieces = chunks.subList(1, 4);
+        assertThat(pieces).extracting(SourceRecord::value).containsExactly("abcd", "éé", "😀x");
+        assertThat(pieces.stream().map(r -> (String) r.value()).collect(Collectors.joining())).isEqualTo(value);
+        assertThat(pieces).allSatisfy(piece -> {
+            assertThat(((String) piece.value()).getBytes(StandardCharsets.UTF_8).length).isLessThanOrEqualTo(5);
+            assertThat(piece.key()).isEqualTo("key");
+            assertThat(piece.headers().lastWithName(OversizeHandler.CHUNK_COUNT).value()).isEqualTo(3);
+            assertThat(piece.headers().lastWithName(OversizeHandler.CHUNK_ID).value())
+                    .isEqualTo(pieces.get(0).headers().lastWithName(OversizeHandler.CHUNK_ID).value());
+        });
+        assertThat(pieces).extracting(piece -> piece.headers().lastWithName(OversizeHandler.CHUNK_INDEX).value()).containsExactly(0, 1, 2);
+    }
+
+    @Test
+    void apply_withChunkStrategy_givesRecordOffsetToLastChunkOnly() throws Exception {
+        List<SourceRecord> records = List.of(record("abcdefgh", 1L), record("ok", 2L), record("ijklmnop", 3L));
+
+        List<SourceRecord> chunks = new OversizeHandler(5L, "chunk", null).apply(records, RESUME_OFFSET);
+
+        assertThat(chunks).extracting(SourceRecord::value).containsExactly("abcde", "fgh", "ok", "ijklm", "nop");
+        assertThat(chunks).extracting(SourceRecord::sourceOffset).containsExactly(
+                RESUME_OFFSET, offset(1L), offset(2L), offset(2L), offset(3L));
+    }
+
+    @Test
+    void apply_withChunkStrategyOnRepeatedValue_reusesChunkId() throws Exception {
+        OversizeHandler handler = new OversizeHandler(5L, "chunk", null);
+
+        Object first = handler.apply(List.of(record("abcdefgh")), RESUME_OFFSET).get(0).headers().lastWithName(OversizeHandler.CHUNK_ID).value();
+        Object second = handler.apply(List.of(record("abcdefgh")), RESUME_OFFSET).get(0).headers().lastWithName(OversizeHandler.CHUNK_ID).value();
+        Object other = handler.apply(List.of(record("abcdefgX")), RESUME_OFFSET).get(0).headers().lastWithName(OversizeHandler.CHUNK_ID).value();
+
+        assertThat(first).isEqualTo(second).isNotEqualTo(other);
+    }
+
+    @Test
+    void apply_withClaimCheckStrategy_writesValueAndPublishesReference() throws Exception {
+        String value = "x".repeat(100);
+
+        List<SourceRecord> records = new OversizeHandler(10L, "claim-check", tempDir).apply(List.of(record(value)), RESUME_OFFSET);
+
+        assertThat(records).hasSize(1);
+        assertThat(records.get(0).headers().lastWithName(OversizeHandler.CLAIM_CHECK).value()).isEqualTo(true);
+        JsonNode reference = new ObjectMapper().readTree((String) records.get(0).value());
+        assertThat(reference.get("size").asInt()).isEqualTo(100);
+        assertThat(reference.get("sha256").asText()).hasSize(64);
+        assertThat(Files.readString(Paths.get(reference.get("path").asText()))).isEqualTo(value);
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertThat(files).hasSize(1);
+        }
+    }
+
+    private static SourceRecord record(String value) {
+        return record(value, 1L);
+    }
+
+    private static SourceRecord record(String value, long position) {
+        return new SourceRecord(Map.of("url", "example.com"), offset(position), "topic",
+                Schema.STRING_SCHEMA, "key", Schema.OPTIONAL_STRING_SCHEMA, value);
+    }
+
+    private static Map<String, Object> offset(long position) {
+        return Map.of("file_position", position);
+    }
+}
@@ -0,0 +1,54 @@
+package inc.evil.kafka.connect.http;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PollScheduleTest {
+
+    @Test
+    void nextPollTime_withDefaults_isOneIntervalAfterLastPoll() {
+        PollSchedule schedule = new PollSchedule(5000L, false, false, 0L, "{url=a}", 0L);
+
+        assertThat(schedule.nextPollTime(12_345L)).isEqualTo(17_345L);
+    }
+
+    @Test
+    void nextPollTime_withAlign_isNextWallClockMultiple() {
+        PollSchedule schedule = new PollSchedule(60_000L, false, true, 0L, "{url=a}", 0L);
+
+        assertThat(schedule.nextPollTime(125_000L)).isEqualTo(180_000L);
+        assertThat(schedule.nextPollTime(180_000L)).isEqualTo(240_000L);
+    }
+
+    @Test
+    void nextPollTime_withStagger_shiftsPartitionsByStablePhase() {
+        PollSchedule first = new PollSchedule(60_000L, true, false, 0L, "{url=http://a}", 0L);
+        PollSchedule again = new PollSchedule(60_000L, true, false, 0L, "{url=http://a}", 0L);
+        PollSchedule other = new PollSchedule(60_000L, true, false, 0L, "{url=http://b}", 0L);
+
+        long next = first.nextPollTime(1_000_000L);
+
+        assertThat(next).isGreaterThan(1_000_000L).isLessThanOrEqualTo(1_060_000L);
+        assertThat(Math.floorMod(next, 60_000L)).isEqualTo(first.getPhaseMs());
+        assertThat(again.getPhaseMs()).isEqualTo(first.getPhaseMs());
+        assertThat(other.getPhaseMs()).isNotEqualTo(first.getPhaseMs());
+    }
+
+    @Test
+    void nextPollTime_withStaggerAndNoPreviousPoll_waitsForGridPointAfterStart() {
+        PollSchedule schedule = new PollSchedule(60_000L, true, false, 0L, "{url=http://a}", 1_000_000L);
+
+        assertThat(schedule.nextPollTime(0L)).isGreaterThan(1_000_000L).isLessThanOrEqualTo(1_060_000L);
+    }
+
+    @Test
+    void nextPollTime_withJitter_staysStableForSameLastPoll() {
+        PollSchedule schedule = new PollSchedule(5000L, false, false, 1000L, "{url=a}", 0L);
+
+        long next = schedule.nextPollTime(10_000L);
+
+        assertThat(next).isBetween(15_000L, 16_000L);
+        assertThat(schedule.nextPollTime(10_000L)).isEqualTo(next);
+    }
+}
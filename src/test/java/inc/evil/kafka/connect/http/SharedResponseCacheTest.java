@@ -0,0 +1,137 @@
+package inc.evil.kafka.connect.http;
+
+import inc.evil.kafka.connect.http.HttpApiClient.FetchResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SharedResponseCacheTest {
+
+    private final SharedResponseCache cache = SharedResponseCache.getInstance(0L);
+
+    @AfterEach
+    public void tearDown() {
+        SharedResponseCache.clearAll();
+    }
+
+    @Test
+    void fetch_withConcurrentIdenticalRequests_sharesSingleFetch() throws Exception {
+        AtomicInteger fetches = new AtomicInteger();
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<FetchResult> leader = executor.submit(() -> cache.fetch("GET http://a.com", true, 0L, () -> {
+                fetches.incrementAndGet();
+                leaderStarted.countDown();
+                awaitQuietly(release);
+                return new FetchResult("shared", -1L);
+            }, SharedResponseCache::await));
+            leaderStarted.await(5, TimeUnit.SECONDS);
+            Future<FetchResult> follower = executor.submit(() -> cache.fetch("GET http://a.com", true, 0L, () -> {
+                fetches.incrementAndGet();
+                return new FetchResult("own", -1L);
+            }, SharedResponseCache::await));
+            Thread.sleep(100L);
+            release.countDown();
+
+            assertThat(leader.get(5, TimeUnit.SECONDS).body).isEqualTo("shared");
+            assertThat(follower.get(5, TimeUnit.SECONDS).body).isEqualTo("shared");
+            assertThat(fetches).hasValue(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    void fetch_withNoStoreResponse_doesNotCache() throws Exception {
+        AtomicInteger fetches = new AtomicInteger();
+        SharedResponseCache.Fetcher fetcher = () -> new FetchResult("body-" + fetches.incrementAndGet(), 0L);
+
+        SharedResponseCache cache = SharedResponseCache.getInstance(1024L);
+
+        cache.fetch("GET http://b.com", false, 60000L, fetcher, SharedResponseCache::await);
+        FetchResult second = cache.fetch("GET http://b.com", false, 60000L, fetcher, SharedResponseCache::await);
+
+        assertThat(second.body).isEqualTo("body-2");
+    }
+
+    @Test
+    void fetch_withSizeLimitExceeded_evictsLeastRecentlyUsed() throws Exception {
+        AtomicInteger fetches = new AtomicInteger();
+        SharedResponseCache.Fetcher fetcher = () -> new FetchResult("x".repeat(100) + fetches.incrementAndGet(), 60000L);
+        SharedResponseCache cache = SharedResponseCache.getInstance(300L);
+
+        cache.fetch("k1", false, 0L, fetcher, SharedResponseCache::await);
+        cache.fetch("k2", false, 0L, fetcher, SharedResponseCache::await);
+        FetchResult refetched = cache.fetch("k1", false, 0L, fetcher, SharedResponseCache::await);
+
+        assertThat(refetched.body).endsWith("3");
+        assertThat(fetches).hasValue(3);
+    }
+
+    @Test
+    void fetch_withSmallerLimitOfAnotherClient_keepsOwnEntries() throws Exception {
+        AtomicInteger fetches = new AtomicInteger();
+        SharedResponseCache.Fetcher fetcher = () -> new FetchResult("x".repeat(100) + fetches.incrementAndGet(), 60000L);
+        SharedResponseCache large = SharedResponseCache.getInstance(10000L);
+
+        large.fetch("k1", false, 0L, fetcher, SharedResponseCache::await);
+        SharedResponseCache.getInstance(300L).fetch("k2", false, 0L, fetcher, SharedResponseCache::await);
+        SharedResponseCache.getInstance(300L).fetch("k3", false, 0L, fetcher, SharedResponseCache::await);
+        FetchResult cached = large.fetch("k1", false, 0L, fetcher, SharedResponseCache::await);
+
+        assertThat(cached.body).endsWith("1");
+        assertThat(SharedResponseCache.getInstance(10000L)).isSameAs(large);
+    }
+
+    @Test
+    void fetch_withCancelledFollowerWait_failsFollowerOnly() throws Exception {
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<FetchResult> leader = executor.submit(() -> cache.fetch("GET http://c.com", true, 0L, () -> {
+                leaderStarted.countDown();
+                awaitQuietly(release);
+                return new FetchResult("shared", -1L);
+            }, SharedResponseCache::await));
+            leaderStarted.await(5, TimeUnit.SECONDS);
+
+            assertThatThrownBy(() -> cache.fetch("GET http://c.com", true, 0L, () -> new FetchResult("own", -1L), shared -> {
+                shared.cancel(false);
+                return SharedResponseCache.await(shared);
+            })).isInstanceOf(InterruptedIOException.class);
+
+            release.countDown();
+            assertThat(leader.get(5, TimeUnit.SECONDS).body).isEqualTo("shared");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void freshnessLifetimeMs_withCacheControlDirectives_parsesLifetime() {
+        assertThat(SharedResponseCache.freshnessLifetimeMs("public, max-age=30")).isEqualTo(30000L);
+        assertThat(SharedResponseCache.freshnessLifetimeMs("no-store")).isZero();
+        assertThat(SharedResponseCache.freshnessLifetimeMs(null)).isEqualTo(-1L);
+    }
+}
@@ -0,0 +1,109 @@
+package inc.evil.kafka.connect.http;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SnapshotDifferTest {
+
+    @TempDir
+    Path indexDir;
+
+    @Test
+    void offer_withFirstSnapshot_reportsEveryElementAsChanged() throws IOException {
+        try (SnapshotDiffer differ = new SnapshotDiffer(null, "test")) {
+            differ.begin();
+
+            assertThat(differ.offer("a", "{\"id\":\"a\",\"v\":1}")).isTrue();
+            assertThat(differ.offer("b", "{\"id\":\"b\",\"v\":1}")).isTrue();
+            assertThat(differ.finish()).isEmpty();
+        }
+    }
+
+    @Test
+    void offer_withSecondSnapshot_reportsOnlyChangesAndDeletions() throws IOException {
+        try (SnapshotDiffer differ = new SnapshotDiffer(null, "test")) {
+            differ.begin();
+            differ.offer("a", "{\"id\":\"a\",\"v\":1}");
+            differ.offer("b", "{\"id\":\"b\",\"v\":1}");
+            differ.offer("c", "{\"id\":\"c\",\"v\":1}");
+            differ.finish();
+            differ.commit();
+
+            differ.begin();
+            boolean unchanged = differ.offer("a", "{\"id\":\"a\",\"v\":1}");
+            boolean updated = differ.offer("b", "{\"id\":\"b\",\"v\":2}");
+            boolean inserted = differ.offer("d", "{\"id\":\"d\",\"v\":1}");
+            List<String> deleted = differ.finish();
+
+            assertThat(unchanged).isFalse();
+            assertThat(updated).isTrue();
+            assertThat(inserted).isTrue();
+            assertThat(deleted).containsExactly("c");
+        }
+    }
+
+    @Test
+    void abort_withIncompleteSnapshot_keepsPreviousSnapshot() throws IOException {
+        try (SnapshotDiffer differ = new SnapshotDiffer(null, "test")) {
+            differ.begin();
+            differ.offer("a", "1");
+            differ.finish();
+            differ.commit();
+            differ.begin();
+            differ.offer("a", "2");
+            differ.abort();
+
+            differ.begin();
+            assertThat(differ.offer("a", "1")).isFalse();
+        }
+    }
+
+    @Test
+    void abort_withFinishedButUncommittedSnapshot_reportsChangesAgain() throws IOException {
+        try (SnapshotDiffer differ = new SnapshotDiffer(null, "test")) {
+            differ.begin();
+            differ.offer("a", "1");
+            differ.offer("b", "1");
+            differ.finish();
+            differ.commit();
+            differ.begin();
+            differ.offer("a", "2");
+            assertThat(differ.finish()).containsExactly("b");
+            differ.abort();
+
+            differ.begin();
+            assertThat(differ.offer("a", "2")).isTrue();
+            assertThat(differ.finish()).containsExactly("b");
+        }
+    }
+
+    @Test
+    void offer_withMappedIndexGrowingPastInitialCapacity_tracksAllKeys() throws IOException {
+        try (SnapshotDiffer differ = new SnapshotDiffer(indexDir, "mapped")) {
+            differ.begin();
+            for (int i = 0; i < 5000; i++) {
+                differ.offer("key-" + i, "value-" + i);
+            }
+            differ.finish();
+            differ.commit();
+
+            differ.begin();
+            for (int i = 1; i < 5000; i++) {
+                differ.offer("key-" + i, "value-" + i);
+            }
+            assertThat(differ.offer("key-42", "changed")).isTrue();
+            assertThat(differ.finish()).containsExactly("key-0");
+        }
+        try (Stream<Path> files = Files.list(indexDir)) {
+            assertThat(files).isEmpty();
+        }
+    }
+}